@@ -1,5 +1,6 @@
 package com.fuse.android.text;
 
+import android.graphics.Typeface;
 import android.os.Build;
 import android.text.Layout.Alignment;
 import android.text.StaticLayout;
@@ -8,88 +9,224 @@ import android.text.TextDirectionHeuristics;
 import android.text.TextPaint;
 import android.text.TextUtils.TruncateAt;
 import android.util.Log;
+import android.util.LruCache;
 
 import java.lang.reflect.Constructor;
+import java.util.Locale;
 
+/*
+	Creates StaticLayouts, and caches the ones made for plain strings.
+
+	On API 23 and later layouts are made with StaticLayout.Builder; older versions
+	fall back to the hidden constructor that takes max lines. Neither path holds a
+	lock while laying out, so several threads can measure text at once.
+
+	A StaticLayout is immutable once built, so layouts for the same text, width and
+	options are shared between measure passes. Cache keys include the paint instance
+	along with the paint state that affects measuring, since the layout keeps drawing
+	with the paint it was made for.
+*/
 public class StaticLayoutBuilder {
 	private static final String LOGTAG = "StaticLayoutBuilder";
 
-	private static final String TEXT_DIR_CLASS = "android.text.TextDirectionHeuristic";
-	private static final String TEXT_DIRS_CLASS = "android.text.TextDirectionHeuristics";
-	private static final String TEXT_DIR_FIRSTSTRONG_LTR = "FIRSTSTRONG_LTR";
+	private static final int CACHE_SIZE = 256;
 
-	private static boolean sInitialized;
+	private static volatile boolean sInitialized;
 
 	private static Constructor<StaticLayout> sConstructor;
-	private static Object[] sConstructorArgs;
 	private static Object sTextDirection;
 
-	public static synchronized void ensureInitialized() {
+	private static final LruCache<Key, StaticLayout> sCache = new LruCache<Key, StaticLayout>(CACHE_SIZE);
+
+	public static void ensureInitialized() {
 		if (sInitialized) {
 			return;
 		}
 
-		try {
-			final Class<?> textDirClass = TextDirectionHeuristic.class;
-			sTextDirection = TextDirectionHeuristics.FIRSTSTRONG_LTR;
-
-			final Class<?>[] signature = new Class[] {
-					CharSequence.class,
-					int.class,
-					int.class,
-					TextPaint.class,
-					int.class,
-					Alignment.class,
-					textDirClass,
-					float.class,
-					float.class,
-					boolean.class,
-					TruncateAt.class,
-					int.class,
-					int.class
-			};
-
-			// Make the StaticLayout constructor with max lines public
-			sConstructor = StaticLayout.class.getDeclaredConstructor(signature);
-			sConstructor.setAccessible(true);
-			sConstructorArgs = new Object[signature.length];
-		} catch (NoSuchMethodException e) {
-			Log.e(LOGTAG, "StaticLayout constructor with max lines not found.", e);
-		} finally {
-			sInitialized = true;
+		synchronized (StaticLayoutBuilder.class) {
+			if (sInitialized) {
+				return;
+			}
+
+			try {
+				final Class<?> textDirClass = TextDirectionHeuristic.class;
+				sTextDirection = TextDirectionHeuristics.FIRSTSTRONG_LTR;
+
+				final Class<?>[] signature = new Class[] {
+						CharSequence.class,
+						int.class,
+						int.class,
+						TextPaint.class,
+						int.class,
+						Alignment.class,
+						textDirClass,
+						float.class,
+						float.class,
+						boolean.class,
+						TruncateAt.class,
+						int.class,
+						int.class
+				};
+
+				// Make the StaticLayout constructor with max lines public
+				Constructor<StaticLayout> constructor = StaticLayout.class.getDeclaredConstructor(signature);
+				constructor.setAccessible(true);
+				sConstructor = constructor;
+			} catch (NoSuchMethodException e) {
+				Log.e(LOGTAG, "StaticLayout constructor with max lines not found.", e);
+			} finally {
+				sInitialized = true;
+			}
 		}
 	}
 
 	public static boolean isSupported() {
+		if (Build.VERSION.SDK_INT >= 23) {
+			return true;
+		}
 		ensureInitialized();
 		return (sConstructor != null);
 	}
 
-	public static synchronized StaticLayout create(CharSequence source, int bufstart, int bufend,
-												   TextPaint paint, int outerWidth, Alignment align,
-												   float spacingMult, float spacingAdd,
-												   boolean includePad, TruncateAt ellipsize,
-												   int ellipsisWidth, int maxLines) {
+	public static StaticLayout create(CharSequence source, int bufstart, int bufend,
+									  TextPaint paint, int outerWidth, Alignment align,
+									  float spacingMult, float spacingAdd,
+									  boolean includePad, TruncateAt ellipsize,
+									  int ellipsisWidth, int maxLines) {
+		if (Build.VERSION.SDK_INT >= 23) {
+			return StaticLayout.Builder.obtain(source, bufstart, bufend, paint, outerWidth)
+				.setAlignment(align)
+				.setLineSpacing(spacingAdd, spacingMult)
+				.setIncludePad(includePad)
+				.setEllipsize(ellipsize)
+				.setEllipsizedWidth(ellipsisWidth)
+				.setMaxLines(maxLines)
+				.build();
+		}
+
 		ensureInitialized();
 
+		if (maxLines == Integer.MAX_VALUE || sConstructor == null) {
+			return new StaticLayout(source, bufstart, bufend, paint, outerWidth, align,
+				spacingMult, spacingAdd, includePad, ellipsize, ellipsisWidth);
+		}
+
 		try {
-			sConstructorArgs[0] = source;
-			sConstructorArgs[1] = bufstart;
-			sConstructorArgs[2] = bufend;
-			sConstructorArgs[3] = paint;
-			sConstructorArgs[4] = outerWidth;
-			sConstructorArgs[5] = align;
-			sConstructorArgs[6] = sTextDirection;
-			sConstructorArgs[7] = spacingMult;
-			sConstructorArgs[8] = spacingAdd;
-			sConstructorArgs[9] = includePad;
-			sConstructorArgs[10] = ellipsize;
-			sConstructorArgs[11] = ellipsisWidth;
-			sConstructorArgs[12] = maxLines;
-
-			return sConstructor.newInstance(sConstructorArgs);
+			// A fresh argument array per call, so concurrent callers never share state
+			return sConstructor.newInstance(source, bufstart, bufend, paint, outerWidth, align,
+				sTextDirection, spacingMult, spacingAdd, includePad, ellipsize, ellipsisWidth, maxLines);
 		} catch (Exception e) {
 			throw new IllegalStateException("Error creating StaticLayout with max lines: " + e);
 		}
 	}
-}
\ No newline at end of file
+
+	/*
+		Like `create` for the whole of `text`, but returns a cached layout when an equal
+		one was made before.
+	*/
+	public static StaticLayout obtain(String text, TextPaint paint, int outerWidth, Alignment align,
+									  float spacingMult, float spacingAdd, boolean includePad,
+									  TruncateAt ellipsize, int ellipsisWidth, int maxLines) {
+		Key key = new Key(text, paint, outerWidth, align, spacingMult, spacingAdd, includePad,
+			ellipsize, ellipsisWidth, maxLines);
+
+		StaticLayout layout = sCache.get(key);
+		if (layout != null) {
+			return layout;
+		}
+
+		// Laid out outside of the cache lock; if two threads race, both results are equal
+		layout = create(text, 0, text.length(), paint, outerWidth, align, spacingMult, spacingAdd,
+			includePad, ellipsize, ellipsisWidth, maxLines);
+		sCache.put(key, layout);
+		return layout;
+	}
+
+	public static void clearCache() {
+		sCache.evictAll();
+	}
+
+	static final class Key {
+		final String text;
+		final TextPaint paint;
+		final float textSize;
+		final float textScaleX;
+		final float textSkewX;
+		final float letterSpacing;
+		final int flags;
+		final Typeface typeface;
+		final Locale locale;
+		final int outerWidth;
+		final Alignment align;
+		final float spacingMult;
+		final float spacingAdd;
+		final boolean includePad;
+		final TruncateAt ellipsize;
+		final int ellipsisWidth;
+		final int maxLines;
+		final int hash;
+
+		Key(String text, TextPaint paint, int outerWidth, Alignment align,
+			float spacingMult, float spacingAdd, boolean includePad,
+			TruncateAt ellipsize, int ellipsisWidth, int maxLines) {
+			this.text = text;
+			this.paint = paint;
+			this.textSize = paint.getTextSize();
+			this.textScaleX = paint.getTextScaleX();
+			this.textSkewX = paint.getTextSkewX();
+			this.letterSpacing = Build.VERSION.SDK_INT >= 21 ? paint.getLetterSpacing() : 0;
+			this.flags = paint.getFlags();
+			this.typeface = paint.getTypeface();
+			this.locale = paint.getTextLocale();
+			this.outerWidth = outerWidth;
+			this.align = align;
+			this.spacingMult = spacingMult;
+			this.spacingAdd = spacingAdd;
+			this.includePad = includePad;
+			this.ellipsize = ellipsize;
+			this.ellipsisWidth = ellipsisWidth;
+			this.maxLines = maxLines;
+
+			int h = text.hashCode();
+			h = 31 * h + System.identityHashCode(paint);
+			h = 31 * h + Float.floatToIntBits(textSize);
+			h = 31 * h + outerWidth;
+			h = 31 * h + maxLines;
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key)o;
+			return hash == k.hash
+				&& paint == k.paint
+				&& outerWidth == k.outerWidth
+				&& maxLines == k.maxLines
+				&& ellipsisWidth == k.ellipsisWidth
+				&& includePad == k.includePad
+				&& flags == k.flags
+				&& Float.compare(textSize, k.textSize) == 0
+				&& Float.compare(textScaleX, k.textScaleX) == 0
+				&& Float.compare(textSkewX, k.textSkewX) == 0
+				&& Float.compare(letterSpacing, k.letterSpacing) == 0
+				&& Float.compare(spacingMult, k.spacingMult) == 0
+				&& Float.compare(spacingAdd, k.spacingAdd) == 0
+				&& align == k.align
+				&& ellipsize == k.ellipsize
+				&& typeface == k.typeface
+				&& (locale == null ? k.locale == null : locale.equals(k.locale))
+				&& text.equals(k.text);
+		}
+	}
+}
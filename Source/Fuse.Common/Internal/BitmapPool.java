@@ -0,0 +1,274 @@
+package com.fuse.android;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+	Shared pool of mutable bitmaps that decoders can borrow through
+	BitmapFactory.Options.inBitmap instead of allocating a fresh bitmap.
+
+	Bitmaps are bucketed by allocation size. A request is served from the
+	smallest bucket that is large enough, but never from one more than twice
+	the requested size, so a thumbnail does not pin a full photo. When the
+	pool exceeds its byte budget the least recently returned bitmaps are
+	recycled first.
+
+	Bitmaps handed to `put` belong to the pool and must not be used afterwards.
+*/
+public class BitmapPool
+{
+	private static final String TAG = BitmapPool.class.getSimpleName();
+
+	private static BitmapPool _default;
+
+	public static synchronized BitmapPool getDefault()
+	{
+		if (_default == null)
+			_default = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+		return _default;
+	}
+
+	private final TreeMap<Integer, ArrayDeque<Bitmap>> _buckets = new TreeMap<Integer, ArrayDeque<Bitmap>>();
+	private final LinkedHashSet<Bitmap> _lru = new LinkedHashSet<Bitmap>();
+	private long _maxBytes;
+	private long _currentBytes;
+
+	private long _hits;
+	private long _misses;
+	private long _evictions;
+
+	public BitmapPool(long maxBytes)
+	{
+		_maxBytes = maxBytes;
+	}
+
+	public synchronized long getMaxBytes()
+	{
+		return _maxBytes;
+	}
+
+	public synchronized void setMaxBytes(long maxBytes)
+	{
+		_maxBytes = maxBytes;
+		trimTo(_maxBytes);
+	}
+
+	public synchronized long getCurrentBytes() { return _currentBytes; }
+	public synchronized long getHitCount() { return _hits; }
+	public synchronized long getMissCount() { return _misses; }
+	public synchronized long getEvictionCount() { return _evictions; }
+
+	/*
+		Removes and returns a pooled bitmap that can hold `width` x `height` pixels of
+		`config`, or null if there is none. The returned bitmap keeps its old content
+		and dimensions; it is meant to be passed as `inBitmap` or reconfigured.
+	*/
+	public synchronized Bitmap get(int width, int height, Bitmap.Config config)
+	{
+		int needed = byteCount(width, height, config);
+		Map.Entry<Integer, ArrayDeque<Bitmap>> entry = _buckets.ceilingEntry(needed);
+		while (entry != null && entry.getKey() <= (long)needed * 2)
+		{
+			Iterator<Bitmap> it = entry.getValue().iterator();
+			while (it.hasNext())
+			{
+				Bitmap candidate = it.next();
+				if (candidate.getConfig() != config)
+					continue;
+
+				it.remove();
+				if (entry.getValue().isEmpty())
+					_buckets.remove(entry.getKey());
+				_lru.remove(candidate);
+				_currentBytes -= entry.getKey();
+				_hits++;
+				return candidate;
+			}
+			entry = _buckets.higherEntry(entry.getKey());
+		}
+		_misses++;
+		return null;
+	}
+
+	/*
+		Returns a bitmap to the pool. Bitmaps that can not be reused for decoding,
+		or that are larger than the whole budget, are recycled right away.
+	*/
+	public synchronized void put(Bitmap bitmap)
+	{
+		if (bitmap == null || bitmap.isRecycled())
+			return;
+
+		if (_lru.contains(bitmap))
+			return;
+
+		int size = bitmap.getAllocationByteCount();
+		if (!bitmap.isMutable() || size > _maxBytes)
+		{
+			bitmap.recycle();
+			return;
+		}
+
+		ArrayDeque<Bitmap> bucket = _buckets.get(size);
+		if (bucket == null)
+		{
+			bucket = new ArrayDeque<Bitmap>();
+			_buckets.put(size, bucket);
+		}
+		bucket.addLast(bitmap);
+		_lru.add(bitmap);
+		_currentBytes += size;
+
+		trimTo(_maxBytes);
+	}
+
+	/* Recycles every pooled bitmap, for instance on `onLowMemory`. */
+	public synchronized void clear()
+	{
+		trimTo(0);
+	}
+
+	private void trimTo(long maxBytes)
+	{
+		Iterator<Bitmap> it = _lru.iterator();
+		while (_currentBytes > maxBytes && it.hasNext())
+		{
+			Bitmap oldest = it.next();
+			it.remove();
+
+			int size = oldest.getAllocationByteCount();
+			ArrayDeque<Bitmap> bucket = _buckets.get(size);
+			bucket.remove(oldest);
+			if (bucket.isEmpty())
+				_buckets.remove(size);
+
+			_currentBytes -= size;
+			_evictions++;
+			oldest.recycle();
+		}
+	}
+
+	/*
+		Prepares `options` for decoding into a pooled bitmap. `options.outWidth`,
+		`options.outHeight` and `options.inSampleSize` must already be set, typically
+		from an `inJustDecodeBounds` pass.
+	*/
+	public void prepareOptions(BitmapFactory.Options options)
+	{
+		int sampleSize = Math.max(1, options.inSampleSize);
+		int width = (options.outWidth + sampleSize - 1) / sampleSize;
+		int height = (options.outHeight + sampleSize - 1) / sampleSize;
+		prepareOptions(options, width, height);
+	}
+
+	public void prepareOptions(BitmapFactory.Options options, int width, int height)
+	{
+		Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+		options.inJustDecodeBounds = false;
+		options.inMutable = true;
+		if (width > 0 && height > 0)
+			options.inBitmap = get(width, height, config);
+	}
+
+	public Bitmap decodeFile(String path, BitmapFactory.Options options)
+	{
+		if (options == null)
+			options = new BitmapFactory.Options();
+
+		BitmapFactory.Options bounds = new BitmapFactory.Options();
+		bounds.inJustDecodeBounds = true;
+		BitmapFactory.decodeFile(path, bounds);
+		options.outWidth = bounds.outWidth;
+		options.outHeight = bounds.outHeight;
+		prepareOptions(options);
+
+		try {
+			return BitmapFactory.decodeFile(path, options);
+		} catch (IllegalArgumentException e) {
+			// The decoder rejected the pooled bitmap; decode into a fresh one instead
+			put(releaseInBitmap(options));
+			return BitmapFactory.decodeFile(path, options);
+		}
+	}
+
+	public Bitmap decodeByteArray(byte[] data, int offset, int length, BitmapFactory.Options options)
+	{
+		if (options == null)
+			options = new BitmapFactory.Options();
+
+		BitmapFactory.Options bounds = new BitmapFactory.Options();
+		bounds.inJustDecodeBounds = true;
+		BitmapFactory.decodeByteArray(data, offset, length, bounds);
+		options.outWidth = bounds.outWidth;
+		options.outHeight = bounds.outHeight;
+		prepareOptions(options);
+
+		try {
+			return BitmapFactory.decodeByteArray(data, offset, length, options);
+		} catch (IllegalArgumentException e) {
+			put(releaseInBitmap(options));
+			return BitmapFactory.decodeByteArray(data, offset, length, options);
+		}
+	}
+
+	/*
+		Region decoding draws into `inBitmap` without resizing it, so the pooled bitmap
+		is reconfigured to exactly the size of the sampled region first.
+	*/
+	public Bitmap decodeRegion(BitmapRegionDecoder decoder, Rect region, BitmapFactory.Options options)
+	{
+		int sampleSize = Math.max(1, options.inSampleSize);
+		int width = Math.max(1, region.width() / sampleSize);
+		int height = Math.max(1, region.height() / sampleSize);
+		prepareOptions(options, width, height);
+		if (options.inBitmap != null)
+		{
+			try {
+				options.inBitmap.reconfigure(width, height, options.inBitmap.getConfig());
+			} catch (IllegalArgumentException e) {
+				put(releaseInBitmap(options));
+			}
+		}
+
+		try {
+			return decoder.decodeRegion(region, options);
+		} catch (IllegalArgumentException e) {
+			put(releaseInBitmap(options));
+			return decoder.decodeRegion(region, options);
+		}
+	}
+
+	private static Bitmap releaseInBitmap(BitmapFactory.Options options)
+	{
+		Bitmap bitmap = options.inBitmap;
+		options.inBitmap = null;
+		return bitmap;
+	}
+
+	private static int byteCount(int width, int height, Bitmap.Config config)
+	{
+		int bytesPerPixel;
+		if (config == Bitmap.Config.ALPHA_8)
+			bytesPerPixel = 1;
+		else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444)
+			bytesPerPixel = 2;
+		else
+			bytesPerPixel = 4;
+		return width * height * bytesPerPixel;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return TAG + "[bytes=" + _currentBytes + "/" + _maxBytes
+			+ ", hits=" + _hits + ", misses=" + _misses + ", evictions=" + _evictions + "]";
+	}
+}
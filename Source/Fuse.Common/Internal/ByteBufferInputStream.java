@@ -1,25 +1,37 @@
 package com.fuse.android;
 
+import java.io.EOFException;
 import java.io.InputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import com.uno.UnoBackedByteBuffer;
 
 public class ByteBufferInputStream extends InputStream
 {
-	private UnoBackedByteBuffer _buf;
+	private final ByteBufferSource _source;
+	private long _position;
+	private long _mark;
+	private final byte[] _single = new byte[1];
 
 	public ByteBufferInputStream(UnoBackedByteBuffer buf)
 	{
-		_buf = buf;
+		this(ByteBufferSource.fromUno(buf));
+	}
+
+	public ByteBufferInputStream(ByteBufferSource source)
+	{
+		_source = source;
 	}
 
 	public int read() throws IOException
 	{
-		if (!_buf.hasRemaining())
+		if (_source.read(_position, _single, 0, 1) <= 0)
 			return -1;
 
-		return _buf.get() & 0xFF;
+		_position++;
+		return _single[0] & 0xFF;
 	}
 
 	public int read(byte[] bytes, int off, int len) throws IOException
@@ -27,12 +39,12 @@ public class ByteBufferInputStream extends InputStream
 		if (len == 0)
 			return 0;
 
-		len = Math.min(len, _buf.remaining());
-		if (len == 0)
+		int read = _source.read(_position, bytes, off, len);
+		if (read <= 0)
 			return -1;
 
-		_buf.get(bytes, off, len);
-		return len;
+		_position += read;
+		return read;
 	}
 
 	public int read(byte[] buffer) throws IOException
@@ -40,14 +52,70 @@ public class ByteBufferInputStream extends InputStream
 		return read(buffer, 0, buffer.length);
 	}
 
+	public void readFully(byte[] buffer, int off, int len) throws IOException
+	{
+		while (len > 0)
+		{
+			int read = read(buffer, off, len);
+			if (read < 0)
+				throw new EOFException();
+			off += read;
+			len -= read;
+		}
+	}
+
+	public void readFully(byte[] buffer) throws IOException
+	{
+		readFully(buffer, 0, buffer.length);
+	}
+
+	@Override
+	public long skip(long n) throws IOException
+	{
+		long skipped = Math.max(0, Math.min(n, _source.size() - _position));
+		_position += skipped;
+		return skipped;
+	}
+
 	public int available() throws IOException
 	{
-		return _buf.remaining();
+		return (int)Math.min(Integer.MAX_VALUE, Math.max(0, _source.size() - _position));
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return true;
+	}
+
+	@Override
+	public void mark(int readlimit)
+	{
+		_mark = _position;
+	}
+
+	@Override
+	public void reset() throws IOException
+	{
+		_position = _mark;
+	}
+
+	/* Writes the rest of the stream to `target` without an intermediate copy when the source allows it. */
+	public long transferTo(WritableByteChannel target) throws IOException
+	{
+		long written = _source.transferTo(_position, _source.size() - _position, target);
+		_position += written;
+		return written;
+	}
+
+	public long transferTo(OutputStream out) throws IOException
+	{
+		return transferTo(Channels.newChannel(out));
 	}
 
 	@Override
 	public void close ()
 	{
-		_buf.close();
+		_source.close();
 	}
 }
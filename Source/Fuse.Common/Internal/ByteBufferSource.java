@@ -0,0 +1,180 @@
+package com.fuse.android;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import com.uno.UnoBackedByteBuffer;
+
+/*
+	Read-only, random access view of bytes that is safe to read from several threads.
+
+	Reads are positional and never depend on shared buffer state. Sources backed by
+	java.nio buffers are split into chunks of at most 2GB each, so the total size is
+	only limited by `long`.
+*/
+public abstract class ByteBufferSource
+{
+	public abstract long size();
+
+	/* Reads up to `len` bytes at `position`. Returns -1 when `position` is at or past the end. */
+	public abstract int read(long position, byte[] dst, int off, int len);
+
+	public void close() { }
+
+	/* Writes up to `count` bytes starting at `position` to `target` and returns the number written. */
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException
+	{
+		byte[] chunk = new byte[(int)Math.min(count, 64 * 1024)];
+		long written = 0;
+		while (written < count)
+		{
+			int n = read(position + written, chunk, 0, (int)Math.min(chunk.length, count - written));
+			if (n <= 0)
+				break;
+			ByteBuffer wrapped = ByteBuffer.wrap(chunk, 0, n);
+			while (wrapped.hasRemaining())
+				target.write(wrapped);
+			written += n;
+		}
+		return written;
+	}
+
+	public static ByteBufferSource fromUno(UnoBackedByteBuffer buf)
+	{
+		return new UnoSource(buf);
+	}
+
+	public static ByteBufferSource fromBuffers(ByteBuffer... chunks)
+	{
+		return new ChunkedSource(chunks);
+	}
+
+	static final class UnoSource extends ByteBufferSource
+	{
+		private final UnoBackedByteBuffer _buf;
+
+		UnoSource(UnoBackedByteBuffer buf)
+		{
+			_buf = buf;
+		}
+
+		@Override
+		public long size()
+		{
+			return (long)_buf.capacity();
+		}
+
+		@Override
+		public int read(long position, byte[] dst, int off, int len)
+		{
+			if (position < 0 || position >= size())
+				return -1;
+			if (len == 0)
+				return 0;
+
+			// The Uno buffer only offers relative reads, so moving its position and reading has to be atomic
+			synchronized (_buf)
+			{
+				_buf.position((int)position);
+				len = Math.min(len, _buf.remaining());
+				_buf.get(dst, off, len);
+				return len;
+			}
+		}
+
+		@Override
+		public void close()
+		{
+			_buf.close();
+		}
+	}
+
+	static final class ChunkedSource extends ByteBufferSource
+	{
+		private final ByteBuffer[] _chunks;
+		private final long[] _offsets;
+		private final long _size;
+
+		ChunkedSource(ByteBuffer[] chunks)
+		{
+			_chunks = new ByteBuffer[chunks.length];
+			_offsets = new long[chunks.length];
+			long offset = 0;
+			for (int i = 0; i < chunks.length; i++)
+			{
+				// Our own read-only views, so callers moving their buffers' positions does not affect us
+				_chunks[i] = chunks[i].asReadOnlyBuffer();
+				_offsets[i] = offset;
+				offset += _chunks[i].remaining();
+			}
+			_size = offset;
+		}
+
+		@Override
+		public long size()
+		{
+			return _size;
+		}
+
+		int chunkAt(long position)
+		{
+			int lo = 0;
+			int hi = _chunks.length - 1;
+			while (lo < hi)
+			{
+				int mid = (lo + hi + 1) >>> 1;
+				if (_offsets[mid] <= position)
+					lo = mid;
+				else
+					hi = mid - 1;
+			}
+			return lo;
+		}
+
+		ByteBuffer slice(int chunk, long position, long maxLength)
+		{
+			ByteBuffer view = _chunks[chunk].duplicate();
+			int start = view.position() + (int)(position - _offsets[chunk]);
+			view.position(start);
+			view.limit((int)Math.min(view.limit(), start + maxLength));
+			return view;
+		}
+
+		@Override
+		public int read(long position, byte[] dst, int off, int len)
+		{
+			if (position < 0 || position >= _size)
+				return -1;
+
+			int read = 0;
+			int chunk = chunkAt(position);
+			while (read < len && chunk < _chunks.length)
+			{
+				ByteBuffer view = slice(chunk, position + read, len - read);
+				int n = view.remaining();
+				view.get(dst, off + read, n);
+				read += n;
+				chunk++;
+			}
+			return read;
+		}
+
+		@Override
+		public long transferTo(long position, long count, WritableByteChannel target) throws IOException
+		{
+			if (position < 0 || position >= _size)
+				return 0;
+
+			long written = 0;
+			int chunk = chunkAt(position);
+			while (written < count && chunk < _chunks.length)
+			{
+				ByteBuffer view = slice(chunk, position + written, count - written);
+				while (view.hasRemaining())
+					written += target.write(view);
+				chunk++;
+			}
+			return written;
+		}
+	}
+}
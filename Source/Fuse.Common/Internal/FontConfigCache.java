@@ -0,0 +1,252 @@
+package com.fuse.android.graphics;
+
+import android.os.Build;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Keeps the system font catalog in a binary file in app storage, so the font XML
+ * files are only parsed again when they or the OS build change.
+ *
+ * The cache is tagged with a key made from the build fingerprint and the size and
+ * modification time of every font config file. A cache with any other key, or one
+ * that cannot be read, is ignored and rewritten.
+ */
+public final class FontConfigCache {
+    private static final String LOGTAG = "FontConfigCache";
+    private static final String FILE_NAME = "fuse-fonts.bin";
+
+    private static final int MAGIC = 0x46464e54; // "FFNT"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private FontConfigCache() { }
+
+    /**
+     * Returns the system font catalog, from the cache in `cacheDir` when it is up to
+     * date and otherwise from FontListParser.getFontConfig.
+     */
+    public static FontListParser.Config getFontConfig(File cacheDir) throws Exception {
+        String key = cacheKey(Build.FINGERPRINT, FontListParser.configFiles);
+        File file = new File(cacheDir, FILE_NAME);
+
+        if (file.exists()) {
+            try {
+                FontListParser.Config cached = read(map(file), key);
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (IOException e) {
+                Log.w(LOGTAG, "Could not read font cache", e);
+            }
+        }
+
+        FontListParser.Config config = FontListParser.getFontConfig();
+        try {
+            // Written next to the cache and renamed, so a reader never sees a partial file
+            File temp = new File(cacheDir, FILE_NAME + ".tmp");
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                write(config, key, out);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            Log.w(LOGTAG, "Could not write font cache", e);
+        }
+        return config;
+    }
+
+    static String cacheKey(String fingerprint, File[] files) {
+        StringBuilder key = new StringBuilder(fingerprint);
+        for (File file : files) {
+            key.append('|').append(file.getPath());
+            if (file.exists()) {
+                key.append(':').append(file.length()).append(':').append(file.lastModified());
+            }
+        }
+        return key.toString();
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            FileChannel channel = stream.getChannel();
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            stream.close();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Format
+    //
+    // Strings are stored once in a table and referred to by index, as font paths
+    // and language tags repeat a lot. Index -1 stands for null.
+
+    static void write(FontListParser.Config config, String key, OutputStream stream) throws IOException {
+        List<String> strings = new ArrayList<String>();
+        HashMap<String, Integer> indices = new HashMap<String, Integer>();
+        for (FontListParser.Family family : config.families) {
+            for (String name : family.names) {
+                intern(name, strings, indices);
+            }
+            intern(family.lang, strings, indices);
+            intern(family.variant, strings, indices);
+            for (FontListParser.Font font : family.fonts) {
+                intern(font.fontName, strings, indices);
+            }
+        }
+        for (FontListParser.Alias alias : config.aliases) {
+            intern(alias.name, strings, indices);
+            intern(alias.toName, strings, indices);
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeString(out, key);
+
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            writeString(out, s);
+        }
+
+        out.writeInt(config.version);
+        out.writeInt(config.families.size());
+        for (FontListParser.Family family : config.families) {
+            out.writeInt(family.names.size());
+            for (String name : family.names) {
+                out.writeInt(indexOf(name, indices));
+            }
+            out.writeInt(indexOf(family.lang, indices));
+            out.writeInt(indexOf(family.variant, indices));
+            out.writeInt(family.order);
+            out.writeInt(family.fonts.size());
+            for (FontListParser.Font font : family.fonts) {
+                out.writeInt(indexOf(font.fontName, indices));
+                out.writeInt(font.ttcIndex);
+                out.writeShort(font.weight);
+                out.writeBoolean(font.isItalic);
+            }
+        }
+
+        out.writeInt(config.aliases.size());
+        for (FontListParser.Alias alias : config.aliases) {
+            out.writeInt(indexOf(alias.name, indices));
+            out.writeInt(indexOf(alias.toName, indices));
+            out.writeShort(alias.weight);
+        }
+        out.flush();
+    }
+
+    /** Returns null if `buffer` does not hold a cache for `key`. */
+    static FontListParser.Config read(ByteBuffer buffer, String key) {
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            if (!key.equals(readString(buffer))) {
+                return null;
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; ++i) {
+                strings[i] = readString(buffer);
+            }
+
+            int version = buffer.getInt();
+            int familyCount = buffer.getInt();
+            List<FontListParser.Family> families = new ArrayList<FontListParser.Family>(familyCount);
+            for (int i = 0; i < familyCount; ++i) {
+                int nameCount = buffer.getInt();
+                List<String> names = new ArrayList<String>(nameCount);
+                for (int j = 0; j < nameCount; ++j) {
+                    names.add(lookup(strings, buffer.getInt()));
+                }
+                String lang = lookup(strings, buffer.getInt());
+                String variant = lookup(strings, buffer.getInt());
+                int order = buffer.getInt();
+                int fontCount = buffer.getInt();
+                List<FontListParser.Font> fonts = new ArrayList<FontListParser.Font>(fontCount);
+                for (int j = 0; j < fontCount; ++j) {
+                    String fontName = lookup(strings, buffer.getInt());
+                    int ttcIndex = buffer.getInt();
+                    int weight = buffer.getShort();
+                    boolean isItalic = buffer.get() != 0;
+                    fonts.add(new FontListParser.Font(fontName, ttcIndex, weight, isItalic));
+                }
+                families.add(new FontListParser.Family(names, fonts, lang, variant, order));
+            }
+
+            int aliasCount = buffer.getInt();
+            List<FontListParser.Alias> aliases = new ArrayList<FontListParser.Alias>(aliasCount);
+            for (int i = 0; i < aliasCount; ++i) {
+                String name = lookup(strings, buffer.getInt());
+                String toName = lookup(strings, buffer.getInt());
+                int weight = buffer.getShort();
+                aliases.add(new FontListParser.Alias(name, toName, weight));
+            }
+            return new FontListParser.Config(version, families, aliases);
+        } catch (BufferUnderflowException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            // Bad string length or index, so the file is damaged
+            return null;
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        } catch (NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    private static void intern(String s, List<String> strings, HashMap<String, Integer> indices) {
+        if (s != null && !indices.containsKey(s)) {
+            indices.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    private static int indexOf(String s, HashMap<String, Integer> indices) {
+        return s == null ? -1 : indices.get(s);
+    }
+
+    private static String lookup(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -124,14 +124,19 @@ public class FontListParser {
     public static final int NormalWeight = 400;
     public static final int BoldWeight = 700;
 
+    static final File newXmlFile = new File("/system/etc/fonts.xml");
+    static final File oldXmlFile = new File("/system/etc/system_fonts.xml");
+    static final File oldFallbackXmlFile = new File("/system/etc/fallback_fonts.xml");
+    static final File oldVendorXmlFile = new File("/vendor/etc/fallback_fonts.xml");
+
+    /** Every file getFontConfig may read. */
+    static final File[] configFiles = {
+        newXmlFile, oldXmlFile, oldFallbackXmlFile, oldVendorXmlFile
+    };
+
     // Dispatches between new and old format
     public static Config getFontConfig()
             throws FileNotFoundException, XmlPullParserException, IOException {
-        File newXmlFile = new File("/system/etc/fonts.xml");
-        File oldXmlFile = new File("/system/etc/system_fonts.xml");
-        File oldFallbackXmlFile = new File("/system/etc/fallback_fonts.xml");
-        File oldVendorXmlFile = new File("/vendor/etc/fallback_fonts.xml");
-
         Config result = new Config();
         if (newXmlFile.exists()) {
             try {
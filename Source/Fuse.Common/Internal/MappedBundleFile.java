@@ -0,0 +1,78 @@
+package com.fuse.android;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+	Memory-mapped access to bundled files, so large assets are paged in by the OS
+	instead of being copied onto the Java or Uno heap.
+
+	Only assets stored uncompressed in the APK can be mapped. For compressed assets
+	`map` returns null and `open` falls back to a regular asset stream.
+*/
+public final class MappedBundleFile
+{
+	// A single MappedByteBuffer can address at most this many bytes
+	private static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE;
+
+	private MappedBundleFile() { }
+
+	public static ByteBufferSource map(AssetManager assets, String assetPath) throws IOException
+	{
+		AssetFileDescriptor afd;
+		try
+		{
+			afd = assets.openFd(assetPath);
+		}
+		catch (FileNotFoundException e)
+		{
+			// Also thrown for assets that exist but are compressed
+			return null;
+		}
+		return map(afd);
+	}
+
+	/* Maps the region described by `afd`, and closes it. */
+	public static ByteBufferSource map(AssetFileDescriptor afd) throws IOException
+	{
+		FileInputStream stream = afd.createInputStream();
+		try
+		{
+			FileChannel channel = stream.getChannel();
+			long start = afd.getStartOffset();
+			long length = afd.getLength();
+			if (length == AssetFileDescriptor.UNKNOWN_LENGTH)
+				length = channel.size() - start;
+
+			int count = (int)Math.max(1, (length + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+			ByteBuffer[] chunks = new ByteBuffer[count];
+			for (int i = 0; i < count; i++)
+			{
+				long offset = i * MAX_CHUNK_SIZE;
+				long size = Math.min(MAX_CHUNK_SIZE, length - offset);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start + offset, size);
+			}
+			// The mappings stay valid after the channel is closed
+			return ByteBufferSource.fromBuffers(chunks);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	public static InputStream open(AssetManager assets, String assetPath) throws IOException
+	{
+		ByteBufferSource mapped = map(assets, assetPath);
+		if (mapped != null)
+			return new ByteBufferInputStream(mapped);
+		return assets.open(assetPath);
+	}
+}
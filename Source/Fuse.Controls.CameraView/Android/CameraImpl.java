@@ -9,6 +9,7 @@ import android.hardware.Camera.Size;
 import android.view.Surface;
 import java.util.List;
 import java.util.ArrayList;
+import android.graphics.ImageFormat;
 import android.graphics.SurfaceTexture;
 import android.graphics.Matrix;
 import android.graphics.Rect;
@@ -30,55 +31,97 @@ public class CameraImpl extends TextureView implements TextureView.SurfaceTextur
     int _previewWidth;
     int _previewHeight;
 
+    // Camera characteristics and capabilities, which do not change for the lifetime of the camera
+    final int _facing;
+    final int _sensorOrientation;
+    final List<Size> _pictureSizes;
+    final List<Size> _previewSizes;
+    final List<Size> _videoSizes;
+    final List<String> _focusModes;
+
+    // Picture rotation for each device orientation quadrant (0, 90, 180, 270) and display rotation
+    final int[] _rotationTable = new int[16];
+
+    // Device orientations this many degrees past a quadrant boundary are needed to switch quadrant
+    static final int ORIENTATION_HYSTERESIS = 10;
+    int _deviceQuadrant = 0;
+
+    final Matrix _transform = new Matrix();
+
     public CameraImpl(Context context, Camera camera, int cameraId, int maxWidth, int maxHeight) {
         super(context);
         _maxWidth = maxWidth;
         _maxHeight = maxHeight;
         _camera = camera;
         _cameraId = cameraId;
+
+        Camera.CameraInfo info = new Camera.CameraInfo();
+        Camera.getCameraInfo(cameraId, info);
+        _facing = info.facing;
+        _sensorOrientation = info.orientation;
+        buildRotationTable();
+
+        Camera.Parameters parameters = camera.getParameters();
+        _pictureSizes = parameters.getSupportedPictureSizes();
+        _previewSizes = parameters.getSupportedPreviewSizes();
+        List<Size> videoSizes = parameters.getSupportedVideoSizes();
+        _videoSizes = videoSizes != null ? videoSizes : _previewSizes;
+        _focusModes = parameters.getSupportedFocusModes();
+
         _autoFocus = initFocus();
         setSurfaceTextureListener(this);
         _orientationListener = new OrientationEventListener(context) {
-
-            // This logic is from https://developer.android.com/reference/android/hardware/Camera.Parameters.html#setRotation(int)
             public void onOrientationChanged(int orientation) {
                 if (orientation == OrientationEventListener.ORIENTATION_UNKNOWN)
                     return;
-                Camera.CameraInfo info = new Camera.CameraInfo();
-                Camera.getCameraInfo(_cameraId, info);
-                int displayRotation = getDisplayRotationDegrees();
-                orientation = (orientation + 45) / 90 * 90;
-                int rotation = 0;
-                if (info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-                    if (((orientation / 90) % 2) > 0) {
-                        rotation = 360 - info.orientation;
-                    } else {
-                        rotation = info.orientation;
-                    }
+                // This fires dozens of times a second, so only act when the quadrant really changes
+                int quadrant = ((orientation + 45) / 90) % 4;
+                if (quadrant == _deviceQuadrant)
+                    return;
+                int distance = Math.abs(orientation - quadrant * 90);
+                if (Math.min(distance, 360 - distance) > 45 - ORIENTATION_HYSTERESIS)
+                    return;
+                _deviceQuadrant = quadrant;
+                refreshCameraRotation();
+            }
+        };
+        _orientationListener.enable();
+        // The listener only reports changes, so start from the current display rotation
+        refreshCameraRotation();
+    }
+
+    // This logic is from https://developer.android.com/reference/android/hardware/Camera.Parameters.html#setRotation(int)
+    void buildRotationTable() {
+        for (int quadrant = 0; quadrant < 4; quadrant++) {
+            for (int display = 0; display < 4; display++) {
+                int rotation;
+                if (_facing == Camera.CameraInfo.CAMERA_FACING_FRONT && (quadrant % 2) > 0) {
+                    rotation = 360 - _sensorOrientation;
                 } else {
-                    rotation = info.orientation;
+                    rotation = _sensorOrientation;
                 }
                 // Account for display orientation, where orientation is whether
                 // the os UI is in protrait/landscape
-                rotation = (360 - displayRotation + rotation) % 360;
-                _cameraRotation = rotation;
+                _rotationTable[quadrant * 4 + display] = (360 - display * 90 + rotation) % 360;
             }
-        };
-        _orientationListener.enable();
+        }
+    }
+
+    void refreshCameraRotation() {
+        _cameraRotation = _rotationTable[_deviceQuadrant * 4 + getDisplayRotationDegrees() / 90];
     }
 
     void resumeFocus() {
         if (!_autoFocus)
             return;
-        List<String> focusModes = _camera.getParameters().getSupportedFocusModes();
-        if (focusModes.contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
+        if (_focusModes.contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
             _camera.cancelAutoFocus();
         }
     }
 
     boolean initFocus() {
         Camera.Parameters parameters = _camera.getParameters();
-        List<String> focusModes = parameters.getSupportedFocusModes();
+        List<String> focusModes = _focusModes;
         boolean autoFocus = false;
         if (focusModes.contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
             parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
@@ -95,9 +138,9 @@ public class CameraImpl extends TextureView implements TextureView.SurfaceTextur
 
     public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
         Camera.Parameters parameters = _camera.getParameters();
-        Size pictureSize = getPictureSize(parameters.getSupportedPictureSizes(), width, height);
+        Size pictureSize = getPictureSize(_pictureSizes, width, height);
         parameters.setPictureSize(pictureSize.width, pictureSize.height);
-        Camera.Size previewSize = getOptimalPreviewSize(parameters.getSupportedPreviewSizes(), width, height, pictureSize);
+        Camera.Size previewSize = getOptimalPreviewSize(_previewSizes, width, height, pictureSize);
         UpdateTransform(previewSize, width, height);
         parameters.setPreviewSize(previewSize.width, previewSize.height);
         try {
@@ -106,12 +149,15 @@ public class CameraImpl extends TextureView implements TextureView.SurfaceTextur
             _camera.setPreviewTexture(surface);
             _camera.startPreview();
             _previewRunning = true;
+            if (_frameQueueCapacity > 0)
+                openFrameQueue();
         } catch(Exception e) {
             android.util.Log.d(toString(), e.getMessage());
         }
     }
 
     public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+        closeFrameQueue();
         _camera.stopPreview();
         try {
             _camera.setPreviewTexture(null);
@@ -135,16 +181,82 @@ public class CameraImpl extends TextureView implements TextureView.SurfaceTextur
     }
 
     void updatePreview(int width, int height) {
+        closeFrameQueue();
         _camera.stopPreview();
         Camera.Parameters parameters = _camera.getParameters();
-        Size pictureSize = getPictureSize(parameters.getSupportedPictureSizes(), width, height);
+        Size pictureSize = getPictureSize(_pictureSizes, width, height);
         parameters.setPictureSize(pictureSize.width, pictureSize.height);
-        Camera.Size previewSize = getOptimalPreviewSize(parameters.getSupportedPreviewSizes(), width, height, pictureSize);
+        Camera.Size previewSize = getOptimalPreviewSize(_previewSizes, width, height, pictureSize);
         UpdateTransform(previewSize, width, height);
         parameters.setPreviewSize(previewSize.width, previewSize.height);
         _camera.setDisplayOrientation(getPreviewRotation());
         _camera.setParameters(parameters);
         _camera.startPreview();
+        // The preview size may have changed, so the frame buffers are made anew
+        if (_frameQueueCapacity > 0)
+            openFrameQueue();
+    }
+
+    /*
+        Frame streaming
+
+        Preview frames are delivered into the preallocated buffers of a FrameQueue with
+        setPreviewCallbackWithBuffer, so streaming allocates nothing per frame. Frames are
+        in the preview format, NV21 unless changed, at the preview size.
+    */
+    int _frameQueueCapacity = 0;
+    FrameQueue _frameQueue;
+
+    /*
+        Starts streaming preview frames into a queue holding at most `capacity` frames, and
+        returns it. The queue is replaced when the preview size changes, so consumers should
+        call `getFrameQueue()` again once it is closed.
+    */
+    public FrameQueue startFrameStream(int capacity) {
+        _frameQueueCapacity = Math.max(1, capacity);
+        closeFrameQueue();
+        if (_previewRunning)
+            openFrameQueue();
+        return _frameQueue;
+    }
+
+    public void stopFrameStream() {
+        _frameQueueCapacity = 0;
+        closeFrameQueue();
+    }
+
+    public FrameQueue getFrameQueue() {
+        return _frameQueue;
+    }
+
+    void openFrameQueue() {
+        // Frames are tagged with _cameraRotation, which may be stale if the display rotated since
+        refreshCameraRotation();
+        Camera.Parameters parameters = _camera.getParameters();
+        final Size size = parameters.getPreviewSize();
+        final int format = parameters.getPreviewFormat();
+        int bufferSize = size.width * size.height * ImageFormat.getBitsPerPixel(format) / 8;
+
+        final FrameQueue queue = new FrameQueue(_frameQueueCapacity, bufferSize, new FrameQueue.BufferSink() {
+            public void returnBuffer(byte[] buffer) {
+                _camera.addCallbackBuffer(buffer);
+            }
+        });
+        _camera.setPreviewCallbackWithBuffer(new Camera.PreviewCallback() {
+            public void onPreviewFrame(byte[] data, Camera camera) {
+                queue.offer(data, size.width, size.height, format, _cameraRotation, System.nanoTime());
+            }
+        });
+        _frameQueue = queue;
+    }
+
+    void closeFrameQueue() {
+        if (_frameQueue == null)
+            return;
+        // Also drops the buffers the camera holds
+        _camera.setPreviewCallbackWithBuffer(null);
+        _frameQueue.close();
+        _frameQueue = null;
     }
 
     void UpdateTransform(Size previewSize, int width, int height) {
@@ -173,12 +285,11 @@ public class CameraImpl extends TextureView implements TextureView.SurfaceTextur
         float dx = (width - scaledWidth) / 2;
         float dy = (height - scaledHeight) / 2;
 
-        Matrix matrix = new Matrix();
+        // setTransform copies the matrix, so the same one is reused
+        _transform.setScale(scaleX, scaleY);
+        _transform.postTranslate(dx, dy);
 
-        matrix.setScale(scaleX, scaleY);
-        matrix.postTranslate(dx, dy);
-
-        setTransform(matrix);
+        setTransform(_transform);
     }
 
     public String saveParameters() {
@@ -206,22 +317,57 @@ public class CameraImpl extends TextureView implements TextureView.SurfaceTextur
     }
 
     void updateRotation() {
+        // The display may have rotated since the device orientation last changed
+        refreshCameraRotation();
         Camera.Parameters parameters = _camera.getParameters();
         parameters.setRotation(_cameraRotation);
         _camera.setParameters(parameters);
     }
 
+    /* JPEG quality of pictures, from 1 to 100 */
+    public void setJpegQuality(int quality) {
+        Camera.Parameters parameters = _camera.getParameters();
+        parameters.setJpegQuality(Math.max(1, Math.min(100, quality)));
+        _camera.setParameters(parameters);
+    }
+
+    // Continuous picture focus keeps the preview in focus already, so a focus scan before shooting only adds latency
+    boolean needsFocusBeforeCapture() {
+        return _autoFocus && !Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE.equals(_camera.getParameters().getFocusMode());
+    }
+
     public void takePicture(final IPictureCallback pictureCallback) {
+        takePictures(1, pictureCallback);
+    }
+
+    /*
+        Takes `count` pictures in a row, calling `pictureCallback` once for each of them.
+        Focus is only resolved before the first one.
+    */
+    public void takePictures(final int count, final IPictureCallback pictureCallback) {
         final Camera.PictureCallback jpegCallback = new Camera.PictureCallback() {
+            int _remaining = count;
+
             public void onPictureTaken(byte[] data, Camera camera) {
-                pictureCallback.onPictureTaken(data);
+                // Restart the preview before handing the picture over, so it is not held up by the consumer
                 camera.startPreview();
-                resumeFocus();
+                _remaining--;
+                if (_remaining > 0) {
+                    try {
+                        camera.takePicture(null, null, null, this);
+                    } catch (Exception e) {
+                        pictureCallback.onError(e);
+                        _remaining = 0;
+                    }
+                } else {
+                    resumeFocus();
+                }
+                pictureCallback.onPictureTaken(data);
             }
         };
         try {
             updateRotation();
-            if (_autoFocus) {
+            if (needsFocusBeforeCapture()) {
                 _camera.autoFocus(new Camera.AutoFocusCallback() {
                     public void onAutoFocus(boolean success, Camera camera) {
                         try {
@@ -241,10 +387,22 @@ public class CameraImpl extends TextureView implements TextureView.SurfaceTextur
     }
 
     public void startRecording(IStartRecordingSession startRecordingSession) {
+        startRecording(new RecordingOptions(), startRecordingSession);
+    }
+
+    public void startRecording(RecordingOptions options, IStartRecordingSession startRecordingSession) {
         try {
+            if ((options.width > 0) != (options.height > 0))
+                throw new IllegalArgumentException("Recording width and height must be given together");
             updateRotation();
+            if (options.width > 0 && options.height > 0) {
+                // Recording fails to start with a size the camera does not support, so use the closest one it does
+                Size size = getOptimalSize(_videoSizes, options.width, options.height, options.width, options.height);
+                options.width = size.width;
+                options.height = size.height;
+            }
             _camera.unlock();
-            startRecordingSession.onSuccess(new RecordingSession(_camera, _cameraRotation));
+            startRecordingSession.onSuccess(new RecordingSession(_camera, _cameraRotation, options));
         } catch (Exception e) {
             _camera.lock();
             startRecordingSession.onException(e.getMessage());
@@ -267,7 +425,7 @@ public class CameraImpl extends TextureView implements TextureView.SurfaceTextur
 
             try {
 
-                List<String> focusModes = parameters.getSupportedFocusModes();
+                List<String> focusModes = _focusModes;
 
                 if (isFocusLocked != 1) {
 
@@ -431,6 +589,7 @@ public class CameraImpl extends TextureView implements TextureView.SurfaceTextur
     }
 
     public void dispose() {
+        stopFrameStream();
         setSurfaceTextureListener(null);
         _camera.stopPreview();
         _orientationListener.disable();
@@ -487,15 +646,13 @@ public class CameraImpl extends TextureView implements TextureView.SurfaceTextur
 
     // Logic from https://developer.android.com/reference/android/hardware/Camera.html#setDisplayOrientation(int)
     int getPreviewRotation() {
-        Camera.CameraInfo info = new Camera.CameraInfo();
-        Camera.getCameraInfo(_cameraId, info);
         int degrees = getDisplayRotationDegrees();
         int result;
-        if (info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-            result = (info.orientation + degrees) % 360;
+        if (_facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
+            result = (_sensorOrientation + degrees) % 360;
             result = (360 - result) % 360;
         } else {
-            result = (info.orientation - degrees + 360) % 360;
+            result = (_sensorOrientation - degrees + 360) % 360;
         }
         return result;
     }
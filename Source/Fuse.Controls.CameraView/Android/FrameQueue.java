@@ -0,0 +1,139 @@
+package com.fuse.controls.cameraview;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+
+/*
+    Bounded queue of preview frames, for consumers such as barcode scanners or ML
+    models running on their own threads.
+
+    Frame buffers are allocated once and handed to the camera, which writes preview
+    frames straight into them. A frame is queued when it arrives, and its buffer goes
+    back to the camera when the consumer calls `Frame.release()`. If the consumer falls
+    behind, the oldest queued frame is dropped and its buffer reused, so the camera
+    never runs out of buffers and memory use stays fixed.
+*/
+public final class FrameQueue {
+
+    public interface BufferSink {
+        void returnBuffer(byte[] buffer);
+    }
+
+    public static final class Frame {
+        public final byte[] data;
+        public int width;
+        public int height;
+        // One of the android.graphics.ImageFormat constants
+        public int format;
+        // Clockwise rotation in degrees that makes the frame upright
+        public int rotation;
+        public long timestampNanos;
+
+        final FrameQueue _owner;
+
+        Frame(FrameQueue owner, byte[] data) {
+            _owner = owner;
+            this.data = data;
+        }
+
+        /* Returns the buffer to the camera. The frame must not be used afterwards. */
+        public void release() {
+            _owner.recycle(this);
+        }
+    }
+
+    private final int _capacity;
+    private final BufferSink _sink;
+    private final ArrayDeque<Frame> _queued;
+    private final IdentityHashMap<byte[], Frame> _frames = new IdentityHashMap<byte[], Frame>();
+    private boolean _closed;
+    private long _dropped;
+
+    /*
+        Queues up to `capacity` frames of `bufferSize` bytes. Two more buffers than that
+        are allocated and handed to `sink`, so the camera always has one to write to while
+        the queue is full and the consumer holds a frame.
+    */
+    public FrameQueue(int capacity, int bufferSize, BufferSink sink) {
+        _capacity = Math.max(1, capacity);
+        _sink = sink;
+        _queued = new ArrayDeque<Frame>(_capacity);
+        for (int i = 0; i < _capacity + 2; i++) {
+            Frame frame = new Frame(this, new byte[bufferSize]);
+            _frames.put(frame.data, frame);
+            sink.returnBuffer(frame.data);
+        }
+    }
+
+    public int capacity() {
+        return _capacity;
+    }
+
+    public synchronized long droppedCount() {
+        return _dropped;
+    }
+
+    /* Called by the producer when the camera has filled `data`. */
+    public void offer(byte[] data, int width, int height, int format, int rotation, long timestampNanos) {
+        Frame dropped = null;
+        synchronized (this) {
+            Frame frame = _frames.get(data);
+            if (frame == null || _closed)
+                return;
+
+            frame.width = width;
+            frame.height = height;
+            frame.format = format;
+            frame.rotation = rotation;
+            frame.timestampNanos = timestampNanos;
+
+            if (_queued.size() == _capacity) {
+                dropped = _queued.poll();
+                _dropped++;
+            }
+            _queued.add(frame);
+            notifyAll();
+        }
+        if (dropped != null)
+            _sink.returnBuffer(dropped.data);
+    }
+
+    /* Returns the oldest queued frame, or null if there is none. */
+    public synchronized Frame poll() {
+        return _queued.poll();
+    }
+
+    /*
+        Waits up to `timeoutMs` milliseconds for a frame. Returns null on timeout or when
+        the queue is closed.
+    */
+    public synchronized Frame take(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (_queued.isEmpty() && !_closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                return null;
+            wait(remaining);
+        }
+        return _queued.poll();
+    }
+
+    void recycle(Frame frame) {
+        synchronized (this) {
+            if (_closed)
+                return;
+        }
+        _sink.returnBuffer(frame.data);
+    }
+
+    /* Stops handing out frames and wakes up consumers waiting in `take`. */
+    public synchronized void close() {
+        _closed = true;
+        _queued.clear();
+        notifyAll();
+    }
+
+    public synchronized boolean isClosed() {
+        return _closed;
+    }
+}
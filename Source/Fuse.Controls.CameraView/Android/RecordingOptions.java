@@ -0,0 +1,79 @@
+package com.fuse.controls.cameraview;
+
+import android.media.CamcorderProfile;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.media.MediaRecorder;
+import android.os.Build;
+
+import java.util.HashMap;
+
+/*
+    Encoder settings for a RecordingSession. Settings left at 0 or null fall back to
+    the camcorder's QUALITY_HIGH profile.
+*/
+public class RecordingOptions {
+
+    public static final int CODEC_H264 = 0;
+    public static final int CODEC_HEVC = 1;
+
+    public int videoBitRate = 0;
+    public int width = 0;
+    public int height = 0;
+    public int frameRate = 0;
+    public int codec = CODEC_H264;
+    public int audioBitRate = 0;
+    // Fall back to H.264 when the device has no hardware encoder for `codec`
+    public boolean requireHardwareEncoder = true;
+    // Where to write the file; the public Pictures directory if null
+    public String outputDirectory = null;
+
+    /* The MediaRecorder.VideoEncoder to use for `codec` on this device */
+    int videoEncoder() {
+        if (codec == CODEC_HEVC && Build.VERSION.SDK_INT >= 24
+            && (!requireHardwareEncoder || hasHardwareEncoder(MediaFormat.MIMETYPE_VIDEO_HEVC)))
+            return MediaRecorder.VideoEncoder.HEVC;
+        return MediaRecorder.VideoEncoder.H264;
+    }
+
+    // The codec list is slow to query, so answers are kept
+    static final HashMap<String, Boolean> _hardwareEncoders = new HashMap<String, Boolean>();
+
+    static synchronized boolean hasHardwareEncoder(String mimeType) {
+        Boolean known = _hardwareEncoders.get(mimeType);
+        if (known != null)
+            return known;
+
+        boolean found = false;
+        for (MediaCodecInfo info : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+            if (!info.isEncoder() || !isHardware(info))
+                continue;
+            for (String type : info.getSupportedTypes()) {
+                if (type.equalsIgnoreCase(mimeType))
+                    found = true;
+            }
+        }
+        _hardwareEncoders.put(mimeType, found);
+        return found;
+    }
+
+    static boolean isHardware(MediaCodecInfo info) {
+        if (Build.VERSION.SDK_INT >= 29)
+            return info.isHardwareAccelerated();
+        String name = info.getName().toLowerCase();
+        return !name.startsWith("omx.google.") && !name.startsWith("c2.android.") && !name.contains(".sw.");
+    }
+
+    void apply(MediaRecorder recorder, CamcorderProfile profile) {
+        recorder.setOutputFormat(profile.fileFormat);
+        recorder.setVideoFrameRate(frameRate > 0 ? frameRate : profile.videoFrameRate);
+        recorder.setVideoSize(width > 0 ? width : profile.videoFrameWidth, height > 0 ? height : profile.videoFrameHeight);
+        recorder.setVideoEncodingBitRate(videoBitRate > 0 ? videoBitRate : profile.videoBitRate);
+        recorder.setVideoEncoder(videoEncoder());
+        recorder.setAudioEncodingBitRate(audioBitRate > 0 ? audioBitRate : profile.audioBitRate);
+        recorder.setAudioChannels(profile.audioChannels);
+        recorder.setAudioSamplingRate(profile.audioSampleRate);
+        recorder.setAudioEncoder(profile.audioCodec);
+    }
+}
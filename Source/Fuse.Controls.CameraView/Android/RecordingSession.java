@@ -2,49 +2,94 @@ package com.fuse.controls.cameraview;
 
 import android.media.MediaRecorder;
 import android.hardware.Camera;
+import android.os.Handler;
+import android.os.Looper;
 import java.util.UUID;
 import java.io.File;
 import android.os.Environment;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import android.media.CamcorderProfile;
 
 public class RecordingSession {
 
+    // Finalizing a file can take a while for long recordings, so it happens here instead of on the caller's thread
+    static final ExecutorService _finalizer = Executors.newSingleThreadExecutor();
+
     Camera _camera;
     MediaRecorder _mediaRecorder;
     String _outputFilePath;
 
     public RecordingSession(Camera camera, int orientationHintDegrees) throws Exception {
+        this(camera, orientationHintDegrees, new RecordingOptions());
+    }
+
+    public RecordingSession(Camera camera, int orientationHintDegrees, RecordingOptions options) throws Exception {
         _camera = camera;
-        _outputFilePath = makeOutputFilePath();
+        _outputFilePath = makeOutputFilePath(options.outputDirectory);
         _mediaRecorder = new MediaRecorder();
         _mediaRecorder.setCamera(camera);
         _mediaRecorder.setAudioSource(MediaRecorder.AudioSource.CAMCORDER);
         _mediaRecorder.setVideoSource(MediaRecorder.VideoSource.DEFAULT);
-        _mediaRecorder.setProfile(CamcorderProfile.get(CamcorderProfile.QUALITY_HIGH));
+        options.apply(_mediaRecorder, CamcorderProfile.get(CamcorderProfile.QUALITY_HIGH));
         _mediaRecorder.setOutputFile(_outputFilePath);
         _mediaRecorder.setOrientationHint(orientationHintDegrees);
-        _mediaRecorder.prepare();
-        _mediaRecorder.start();
+        try {
+            _mediaRecorder.prepare();
+            _mediaRecorder.start();
+        } catch (Exception e) {
+            _mediaRecorder.release();
+            throw e;
+        }
     }
 
-    String makeOutputFilePath() {
-        File storageDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES);
+    String makeOutputFilePath(String outputDirectory) {
+        File storageDir = outputDirectory != null
+            ? new File(outputDirectory)
+            : Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES);
+        storageDir.mkdirs();
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
         File videoFile = new File(storageDir.getPath() + File.separator + "VID_" + timeStamp + ".mp4");
         return videoFile.getAbsolutePath();
     }
 
-    public void stop(IStopRecordingSession stopRecordingSession) {
-        try {
-            _mediaRecorder.stop();
-            _mediaRecorder.reset();
-            _mediaRecorder.release();
-            _camera.lock();
-            stopRecordingSession.onSuccess(_outputFilePath);
-        } catch(Exception e) {
-            stopRecordingSession.onException(e.getMessage());
-        }
+    /*
+        Stops recording and finalizes the file on a worker thread. The camera is locked
+        again and `stopRecordingSession` called on the main thread once the file is done.
+    */
+    public void stop(final IStopRecordingSession stopRecordingSession) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        _finalizer.execute(new Runnable() {
+            public void run() {
+                String error = null;
+                try {
+                    _mediaRecorder.stop();
+                } catch(Exception e) {
+                    // Thrown when nothing was recorded, in which case the file is not valid
+                    error = e.getMessage();
+                    new File(_outputFilePath).delete();
+                }
+                _mediaRecorder.reset();
+                _mediaRecorder.release();
+
+                final String stopError = error;
+                mainHandler.post(new Runnable() {
+                    public void run() {
+                        try {
+                            _camera.lock();
+                        } catch(Exception e) {
+                            stopRecordingSession.onException(e.getMessage());
+                            return;
+                        }
+                        if (stopError != null)
+                            stopRecordingSession.onException(stopError);
+                        else
+                            stopRecordingSession.onSuccess(_outputFilePath);
+                    }
+                });
+            }
+        });
     }
-}
\ No newline at end of file
+}
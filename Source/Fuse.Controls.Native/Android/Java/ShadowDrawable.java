@@ -1,6 +1,7 @@
 package com.fuse.android.graphics;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.BlurMaskFilter;
 import android.graphics.Canvas;
 import android.graphics.Color;
@@ -12,15 +13,34 @@ import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.util.LruCache;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/*
+    Draws a blurred drop shadow behind a view.
 
+    The blur is rasterized once into an alpha-only mask bitmap and kept in a cache
+    shared by all shadows, so drawing is a few bitmap blits in the shadow color with
+    no mask filter and no software layer. Masks for rounded rectangles are laid out
+    like nine-patches: the corners are drawn as-is and a one pixel wide middle row
+    and column are stretched to the size of the view, so views of different sizes
+    share a mask as long as their corner radii and blur match.
+*/
 public class ShadowDrawable extends Drawable {
 
+    private static final int MASK_CACHE_BYTES = 4 * 1024 * 1024;
+
+    private static final LruCache<String, Bitmap> masks = new LruCache<String, Bitmap>(MASK_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+
     private final Context context;
     private final Paint shadowPaint;
     private int shadowColor;
@@ -30,6 +50,21 @@ public class ShadowDrawable extends Drawable {
     private float[] cornerRadius =  {0,0,0,0,0,0,0,0};
     private boolean isCircle = false;
 
+    // The current mask, and the shape it was made for
+    private Bitmap mask;
+    private boolean maskIsNinePatch;
+    private int maskPadding;
+    private boolean maskDirty = true;
+    private Path clipPath;
+
+    private final Rect src = new Rect();
+    private final RectF dst = new RectF();
+    private final RectF shadowRect = new RectF();
+    private final int[] srcX = new int[4];
+    private final int[] srcY = new int[4];
+    private final float[] dstX = new float[4];
+    private final float[] dstY = new float[4];
+
     public ShadowDrawable(Context context, int shadowColor, int offsetX, int offsetY, int size) {
         this.context = context;
         this.shadowColor = shadowColor;
@@ -38,8 +73,7 @@ public class ShadowDrawable extends Drawable {
         this.size = size;
         shadowPaint = new Paint();
         shadowPaint.setColor(shadowColor);
-        if (size > 0)
-            shadowPaint.setMaskFilter(new BlurMaskFilter(convertDpToPx(this.size), BlurMaskFilter.Blur.NORMAL));
+        shadowPaint.setFilterBitmap(true);
     }
 
     @Override
@@ -87,8 +121,7 @@ public class ShadowDrawable extends Drawable {
     public void setSize(int size) {
         if (size != getSize()) {
             this.size = size;
-            if (size > 0)
-                shadowPaint.setMaskFilter(new BlurMaskFilter(convertDpToPx(this.size), BlurMaskFilter.Blur.NORMAL));
+            maskDirty = true;
             invalidateSelf();
         }
     }
@@ -119,30 +152,168 @@ public class ShadowDrawable extends Drawable {
         return this.offsetY;
     }
 
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        maskDirty = true;
+        clipPath = null;
+    }
+
     private void drawShadow(Canvas canvas) {
-        Path shadowPath = new Path();
+        Rect bounds = getBounds();
+        if (bounds.isEmpty())
+            return;
+
         if (this.isCircle) {
-            Rect bounds= getBounds();
             float x = ((float) bounds.width() / 2) + this.offsetX;
             float y = ((float) bounds.width() / 2) + this.offsetY;
             float radius = ((float) bounds.width() / 2) + this.size;
-            shadowPath.addCircle(x, y,  radius, Path.Direction.CW);
+            if (radius <= 0)
+                return;
+            ensureMask(0, 0);
+            dst.set(x - radius - maskPadding, y - radius - maskPadding, x + radius + maskPadding, y + radius + maskPadding);
+            canvas.drawBitmap(mask, null, dst, shadowPaint);
         } else {
             int spreadExtent = size;
-            RectF shadowRect = new RectF(getBounds());
+            shadowRect.set(bounds);
             shadowRect.inset(-spreadExtent, -spreadExtent);
             shadowRect.offset(offsetX, offsetY);
+            if (shadowRect.width() <= 0 || shadowRect.height() <= 0)
+                return;
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                RectF subpixelInsetBounds = new RectF(getBounds());
-                subpixelInsetBounds.inset(0.4f, 0.4f);
-                Path clipPath = new Path();
-                clipPath.addRoundRect(subpixelInsetBounds, this.cornerRadius,
-                        Path.Direction.CW);
+                if (clipPath == null) {
+                    RectF subpixelInsetBounds = new RectF(bounds);
+                    subpixelInsetBounds.inset(0.4f, 0.4f);
+                    clipPath = new Path();
+                    clipPath.addRoundRect(subpixelInsetBounds, this.cornerRadius,
+                            Path.Direction.CW);
+                }
                 canvas.clipOutPath(clipPath);
             }
-            shadowPath.addRoundRect(shadowRect, this.cornerRadius, Path.Direction.CW);
+            ensureMask((int)shadowRect.width(), (int)shadowRect.height());
+            if (maskIsNinePatch)
+                drawNinePatch(canvas);
+            else {
+                dst.set(shadowRect);
+                dst.inset(-maskPadding, -maskPadding);
+                canvas.drawBitmap(mask, null, dst, shadowPaint);
+            }
+        }
+    }
+
+    /* Draws the mask around shadowRect, stretching its middle row and column */
+    private void drawNinePatch(Canvas canvas) {
+        int w = mask.getWidth();
+        int h = mask.getHeight();
+        int left = cornerExtent(0, 6);
+        int right = cornerExtent(2, 4);
+        int top = cornerExtent(1, 3);
+        int bottom = cornerExtent(5, 7);
+
+        srcX[0] = 0;
+        srcX[1] = left;
+        srcX[2] = w - right;
+        srcX[3] = w;
+        srcY[0] = 0;
+        srcY[1] = top;
+        srcY[2] = h - bottom;
+        srcY[3] = h;
+        dstX[0] = shadowRect.left - maskPadding;
+        dstX[1] = dstX[0] + left;
+        dstX[3] = shadowRect.right + maskPadding;
+        dstX[2] = dstX[3] - right;
+        dstY[0] = shadowRect.top - maskPadding;
+        dstY[1] = dstY[0] + top;
+        dstY[3] = shadowRect.bottom + maskPadding;
+        dstY[2] = dstY[3] - bottom;
+
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                if (dstX[col + 1] <= dstX[col] || dstY[row + 1] <= dstY[row])
+                    continue;
+                src.set(srcX[col], srcY[row], srcX[col + 1], srcY[row + 1]);
+                dst.set(dstX[col], dstY[row], dstX[col + 1], dstY[row + 1]);
+                canvas.drawBitmap(mask, src, dst, shadowPaint);
+            }
         }
-        canvas.drawPath(shadowPath, shadowPaint);
+    }
+
+    /*
+        How far in from the edge of the mask the corners reach, blur included. Takes the
+        indices of the two corner radii that meet that edge.
+    */
+    private int cornerExtent(int a, int b) {
+        return maskPadding + (int)Math.ceil(Math.max(cornerRadius[a], cornerRadius[b])) + blurExtent(blurRadius());
+    }
+
+    /*
+        How far BlurMaskFilter spreads a shape with the given blur radius. Its sigma is
+        0.57735 * radius + 0.5, and the Gaussian only fades out after about three sigma.
+    */
+    private static int blurExtent(int blur) {
+        if (blur <= 0)
+            return 1;
+        return (int)Math.ceil(3 * (0.57735f * blur + 0.5f)) + 1;
+    }
+
+    private int blurRadius() {
+        return size > 0 ? convertDpToPx(size) : 0;
+    }
+
+    /*
+        Makes sure `mask` fits the current shape, fetching or rasterizing it if needed.
+        `width` and `height` are the size of the shadow rectangle, unused for circles.
+    */
+    private void ensureMask(int width, int height) {
+        int blur = blurRadius();
+        if (!maskDirty && mask != null)
+            return;
+
+        maskPadding = blurExtent(blur);
+        Path path = new Path();
+        String key;
+        int maskWidth;
+        int maskHeight;
+        if (this.isCircle) {
+            int diameter = getBounds().width() + this.size * 2;
+            key = "c:" + diameter + ":" + blur;
+            maskWidth = maskHeight = diameter + maskPadding * 2;
+            path.addCircle(maskWidth / 2f, maskHeight / 2f, diameter / 2f, Path.Direction.CW);
+            maskIsNinePatch = false;
+        } else {
+            // The smallest rectangle that still has every corner and a middle to stretch
+            int ninePatchWidth = cornerExtent(0, 6) + cornerExtent(2, 4) - maskPadding * 2 + 1;
+            int ninePatchHeight = cornerExtent(1, 3) + cornerExtent(5, 7) - maskPadding * 2 + 1;
+            maskIsNinePatch = width >= ninePatchWidth && height >= ninePatchHeight;
+            int shapeWidth = maskIsNinePatch ? ninePatchWidth : width;
+            int shapeHeight = maskIsNinePatch ? ninePatchHeight : height;
+            StringBuilder sb = new StringBuilder(maskIsNinePatch ? "n:" : "r:");
+            sb.append(shapeWidth).append(':').append(shapeHeight).append(':').append(blur);
+            for (float r : cornerRadius)
+                sb.append(':').append(r);
+            key = sb.toString();
+            maskWidth = shapeWidth + maskPadding * 2;
+            maskHeight = shapeHeight + maskPadding * 2;
+            RectF shape = new RectF(maskPadding, maskPadding, maskPadding + shapeWidth, maskPadding + shapeHeight);
+            path.addRoundRect(shape, this.cornerRadius, Path.Direction.CW);
+        }
+
+        Bitmap cached = masks.get(key);
+        if (cached == null) {
+            cached = rasterize(path, maskWidth, maskHeight, blur);
+            masks.put(key, cached);
+        }
+        mask = cached;
+        maskDirty = false;
+    }
+
+    private static Bitmap rasterize(Path path, int width, int height, int blur) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        if (blur > 0)
+            paint.setMaskFilter(new BlurMaskFilter(blur, BlurMaskFilter.Blur.NORMAL));
+        new Canvas(bitmap).drawPath(path, paint);
+        return bitmap;
     }
 
     private int convertDpToPx(int dp) {
@@ -152,6 +323,7 @@ public class ShadowDrawable extends Drawable {
 
     public void setCircle(boolean circle) {
         this.isCircle = circle;
+        maskDirty = true;
         invalidateSelf();
     }
 
@@ -164,6 +336,8 @@ public class ShadowDrawable extends Drawable {
         this.cornerRadius[5] = cornerRadius[2] * context.getResources().getDisplayMetrics().density;
         this.cornerRadius[6] = cornerRadius[3] * context.getResources().getDisplayMetrics().density;
         this.cornerRadius[7] = cornerRadius[3] * context.getResources().getDisplayMetrics().density;
+        maskDirty = true;
+        clipPath = null;
         invalidateSelf();
     }
 }
@@ -4,7 +4,11 @@ import android.app.Activity;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.media.ThumbnailUtils;
 import android.media.ExifInterface;
 import android.net.Uri;
@@ -16,7 +20,9 @@ import android.os.Build;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 
+import com.fuse.android.BitmapPool;
 
 public class Image {
 
@@ -93,8 +99,10 @@ public class Image {
 	//ref: https://developer.android.com/topic/performance/graphics/load-bitmap
 	public static int calculateInSampleSize(BitmapFactory.Options options, int reqWidth, int reqHeight) {
 		// Raw height and width of image
-		final int height = options.outHeight;
-		final int width = options.outWidth;
+		return calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+	}
+
+	public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
 		int inSampleSize = 1;
 
 		if (height > reqHeight || width > reqWidth) {
@@ -113,6 +121,9 @@ public class Image {
 		return inSampleSize;
 	}
 
+	// Output rows produced per decoded tile when baking the EXIF rotation into the pixels
+	private static final int ROTATION_TILE_ROWS = 256;
+
 	public void correctOrientationFromExif()
 	{
 		try{
@@ -135,58 +146,113 @@ public class Image {
 					return;
 			}
 
-			Bitmap bmp = getBitmap();
-			try {
-				bmp = rotateImage(bmp, angle);
-			} catch (OutOfMemoryError oome1) {
-
-				/*
-				Attempt to downsize image, else dont do anything to the image.
-				Detect only for less than Oreo cos harder to get OutOfMemory errors on Oreo+
-				~ https://stackoverflow.com/questions/48091403/how-does-bitmap-allocation-work-on-oreo-and-how-to-investigate-their-memory
-				*/
-				if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
-
-					// First decode with inJustDecodeBounds=true to check dimensions
-					final BitmapFactory.Options options = new BitmapFactory.Options();
-					options.inJustDecodeBounds = true;
-					BitmapFactory.decodeFile(_fileUri.getPath(), options);
-
-					//determine reduced resolution
-					long imageSize = getBitmapSizeWithoutDecoding(_fileUri.getPath());
-
-					double targetMB = availableMemoryMB() / 2;
-
-					if (targetMB < imageSize) {
-
-						double reductionPerc = targetMB / imageSize;
-						int newWidth = (int) Math.round(options.outWidth * reductionPerc);
-						int newHeight = (int) Math.round(options.outHeight * reductionPerc);
-
-						// Calculate inSampleSize
-						options.inSampleSize = calculateInSampleSize(options, newWidth, newHeight);
-
-						// Decode bitmap with inSampleSize set
-						options.inJustDecodeBounds = false;
-						try {
-							bmp = BitmapFactory.decodeFile(_fileUri.getPath(), options);
-							bmp = rotateImage(bmp, angle);
-						} catch (OutOfMemoryError oome2) {
-							//do nothing to image
-						}
-					}
-				}
+			String path = getFilePath();
+			BitmapFactory.Options options = getBitmapOptionsWithoutDecoding(path);
+
+			options.inSampleSize = 1;
+			// Only the rotated output is held in full, so below Oreo, where bitmap pixels
+			// live on the Java heap, downsample up front if even that would not fit rather
+			// than waiting for an OutOfMemoryError. From Oreo on pixels are in native
+			// memory, so the heap is the wrong budget and the image keeps full resolution.
+			if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+				long imageSize = getBitmapSizeWithoutDecoding(path);
+				double targetMB = availableMemoryMB() / 2;
+				while (imageSize / ((long)options.inSampleSize * options.inSampleSize) > targetMB && options.inSampleSize < 64)
+					options.inSampleSize *= 2;
 			}
-			ImageStorageTools.saveBitmap(bmp, getFilePath());
-			bmp.recycle();
+
+			Bitmap bmp = rotateTiled(path, options, angle);
+			if (bmp == null)
+			{
+				// Formats BitmapRegionDecoder can not read are rotated in one go
+				BitmapFactory.Options decodeOptions = new BitmapFactory.Options();
+				decodeOptions.inSampleSize = options.inSampleSize;
+				Bitmap source = BitmapPool.getDefault().decodeFile(path, decodeOptions);
+				bmp = rotateImage(source, angle);
+				if (bmp != source)
+					BitmapPool.getDefault().put(source);
+			}
+			ImageStorageTools.saveBitmap(bmp, path);
 		}catch(Exception e){
 			e.printStackTrace();
 		}
 
 	}
 
+	/*
+		Rotates the image at `path` by decoding it in strips of rows and drawing each strip
+		rotated into the output bitmap, so only the output and one strip are in memory at
+		once. `bounds` holds the source dimensions and the `inSampleSize` to decode with.
+		Returns null if the format is not supported by BitmapRegionDecoder.
+	*/
+	static Bitmap rotateTiled(String path, BitmapFactory.Options bounds, int angle)
+	{
+		BitmapRegionDecoder decoder;
+		try {
+			decoder = BitmapRegionDecoder.newInstance(path, false);
+		} catch (IOException e) {
+			return null;
+		}
+
+		try {
+			int sampleSize = Math.max(1, bounds.inSampleSize);
+			int width = Math.max(1, bounds.outWidth / sampleSize);
+			int height = Math.max(1, bounds.outHeight / sampleSize);
+			boolean swap = angle == 90 || angle == 270;
+			int outWidth = swap ? height : width;
+			int outHeight = swap ? width : height;
+
+			Bitmap output = BitmapPool.getDefault().get(outWidth, outHeight, Bitmap.Config.ARGB_8888);
+			if (output != null)
+				output.reconfigure(outWidth, outHeight, Bitmap.Config.ARGB_8888);
+			else
+				output = Bitmap.createBitmap(outWidth, outHeight, Bitmap.Config.ARGB_8888);
+
+			Matrix matrix = new Matrix();
+			matrix.postRotate(angle);
+			switch (angle) {
+				case 90:
+					matrix.postTranslate(height, 0);
+					break;
+				case 180:
+					matrix.postTranslate(width, height);
+					break;
+				case 270:
+					matrix.postTranslate(0, width);
+					break;
+			}
+
+			Canvas canvas = new Canvas(output);
+			canvas.concat(matrix);
+			Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+			int sourceRows = ROTATION_TILE_ROWS * sampleSize;
+			Rect region = new Rect();
+			BitmapFactory.Options tileOptions = new BitmapFactory.Options();
+			tileOptions.inSampleSize = sampleSize;
+
+			for (int top = 0; top < bounds.outHeight; top += sourceRows)
+			{
+				region.set(0, top, bounds.outWidth, Math.min(bounds.outHeight, top + sourceRows));
+				tileOptions.inBitmap = null;
+				Bitmap tile = BitmapPool.getDefault().decodeRegion(decoder, region, tileOptions);
+				if (tile == null)
+				{
+					BitmapPool.getDefault().put(output);
+					return null;
+				}
+				canvas.drawBitmap(tile, 0, top / sampleSize, paint);
+				// The next strip is decoded into the same bitmap
+				BitmapPool.getDefault().put(tile);
+			}
+			return output;
+		} finally {
+			decoder.recycle();
+		}
+	}
+
 	public Bitmap getBitmap(){
-		return BitmapFactory.decodeFile(_fileUri.getPath(), null);
+		return BitmapPool.getDefault().decodeFile(_fileUri.getPath(), null);
 	}
 
 	void setDims(int width, int height)
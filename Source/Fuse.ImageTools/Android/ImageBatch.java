@@ -0,0 +1,212 @@
+package com.fuse.camera;
+
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+	Runs decode -> orient -> crop -> resize -> encode for a list of images on a shared,
+	fixed-size worker pool. Results are reported through a Listener as soon as each
+	image completes, in completion order.
+
+	Two limits keep a large batch from exhausting the heap:
+	- at most `maxConcurrency` images are in flight; submitting further images blocks
+	  the (background) dispatch thread until one completes.
+	- the estimated decoded bitmap bytes of all in-flight images never exceed
+	  `maxDecodedBytes`; workers wait for budget before they start decoding.
+*/
+public class ImageBatch {
+
+	private static final String TAG = ImageBatch.class.getSimpleName();
+
+	public interface Listener
+	{
+		void onResult(int index, String path);
+		void onError(int index, String message);
+		void onComplete();
+	}
+
+	public static class Options
+	{
+		public boolean correctOrientation = false;
+		public boolean crop = false;
+		public int cropX;
+		public int cropY;
+		public int cropWidth;
+		public int cropHeight;
+		public boolean resize = false;
+		public int desiredWidth;
+		public int desiredHeight;
+		public ImageUtils.ResizeMode mode = ImageUtils.ResizeMode.IGNORE_ASPECT;
+		public int quality = 100;
+		public boolean performInPlace = true;
+		public int maxConcurrency = defaultConcurrency();
+		public long maxDecodedBytes = Runtime.getRuntime().maxMemory() / 4;
+	}
+
+	// Decoded bitmaps are accounted in KiB so the budget fits in a Semaphore
+	private static final int BUDGET_UNIT = 1024;
+
+	private static ExecutorService _executor;
+
+	static int defaultConcurrency()
+	{
+		return Math.max(1, Runtime.getRuntime().availableProcessors());
+	}
+
+	static synchronized ExecutorService getExecutor()
+	{
+		if (_executor == null)
+			_executor = Executors.newFixedThreadPool(defaultConcurrency());
+		return _executor;
+	}
+
+	final String[] _paths;
+	final Options _options;
+	final Listener _listener;
+	final Semaphore _inFlight;
+	final Semaphore _budget;
+	final int _budgetUnits;
+	final AtomicInteger _remaining;
+
+	ImageBatch(String[] paths, Options options, Listener listener)
+	{
+		_paths = paths;
+		_options = options;
+		_listener = listener;
+		_inFlight = new Semaphore(Math.max(1, options.maxConcurrency));
+		_budgetUnits = (int)Math.max(1, Math.min(Integer.MAX_VALUE, options.maxDecodedBytes / BUDGET_UNIT));
+		_budget = new Semaphore(_budgetUnits, true);
+		_remaining = new AtomicInteger(paths.length);
+	}
+
+	public static void process(String[] paths, Options options, Listener listener)
+	{
+		final ImageBatch batch = new ImageBatch(paths, options, listener);
+		if (paths.length == 0)
+		{
+			listener.onComplete();
+			return;
+		}
+		Thread t = new Thread(new Runnable() { public void run() {
+			batch.dispatch();
+		}});
+		t.start();
+	}
+
+	void dispatch()
+	{
+		ExecutorService executor = getExecutor();
+		for (int i = 0; i < _paths.length; i++)
+		{
+			final int index = i;
+			try {
+				_inFlight.acquire();
+			} catch (InterruptedException e) {
+				fail(index, "Batch was interrupted");
+				continue;
+			}
+			executor.execute(new Runnable() { public void run() {
+				try {
+					runJob(index);
+				} finally {
+					_inFlight.release();
+				}
+			}});
+		}
+	}
+
+	void runJob(int index)
+	{
+		String path = _paths[index];
+		int units = estimateBudgetUnits(path);
+		try {
+			_budget.acquire(units);
+		} catch (InterruptedException e) {
+			fail(index, "Batch was interrupted");
+			return;
+		}
+
+		try {
+			Image image = Image.fromPath(path);
+			if (!_options.performInPlace)
+				image = copyToScratch(image);
+
+			if (_options.correctOrientation)
+				image.correctOrientationFromExif();
+
+			if (_options.crop)
+				image = ImageUtils.crop(image, _options.cropX, _options.cropY, _options.cropWidth, _options.cropHeight, _options.quality, true);
+
+			if (_options.resize)
+				image = ImageUtils.resize(image, _options.desiredWidth, _options.desiredHeight, _options.mode, _options.quality, true);
+
+			succeed(index, image.getFilePath());
+		} catch (Throwable e) {
+			Log.e(TAG, "Failed to process " + path, e);
+			fail(index, e.getMessage() != null ? e.getMessage() : e.toString());
+		} finally {
+			_budget.release(units);
+		}
+	}
+
+	static Image copyToScratch(Image image) throws Exception
+	{
+		String target = ImageStorageTools.createFilePath(image.getExtension(), true);
+		return ImageStorageTools.copyImage(image.getFile(), new File(target), false);
+	}
+
+	// Upper bound of the ARGB_8888 bytes held at once by the heaviest step of the pipeline
+	int estimateBudgetUnits(String path)
+	{
+		BitmapFactory.Options bounds = Image.getBitmapOptionsWithoutDecoding(path);
+		long width = Math.max(0, bounds.outWidth);
+		long height = Math.max(0, bounds.outHeight);
+		long sourceBytes = width * height * 4;
+		long bytes = 0;
+
+		if (_options.correctOrientation)
+			bytes = Math.max(bytes, sourceBytes * 2);
+
+		if (_options.crop)
+		{
+			bytes = Math.max(bytes, sourceBytes + (long)_options.cropWidth * _options.cropHeight * 4);
+			width = Math.min(width, _options.cropWidth);
+			height = Math.min(height, _options.cropHeight);
+		}
+
+		if (_options.resize)
+		{
+			int sampleSize = Image.calculateInSampleSize((int)width, (int)height, _options.desiredWidth, _options.desiredHeight);
+			long targetBytes = (long)_options.desiredWidth * _options.desiredHeight * 4;
+			bytes = Math.max(bytes, (width * height * 4) / ((long)sampleSize * sampleSize) + targetBytes);
+		}
+
+		int units = (int)Math.min(Integer.MAX_VALUE, bytes / BUDGET_UNIT);
+		// A single image larger than the whole budget still runs, just on its own
+		return Math.max(1, Math.min(units, _budgetUnits));
+	}
+
+	void succeed(int index, String path)
+	{
+		_listener.onResult(index, path);
+		completeOne();
+	}
+
+	void fail(int index, String message)
+	{
+		_listener.onError(index, message);
+		completeOne();
+	}
+
+	void completeOne()
+	{
+		if (_remaining.decrementAndGet() == 0)
+			_listener.onComplete();
+	}
+}
@@ -4,6 +4,8 @@ import android.app.Activity;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
 import android.media.ThumbnailUtils;
 import android.net.Uri;
 import android.provider.MediaStore;
@@ -13,6 +15,9 @@ import android.util.Base64;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import com.fuse.android.BitmapPool;
 
 public class ImageUtils {
 
@@ -27,7 +32,7 @@ public class ImageUtils {
 
 	public static Image crop(Image inImage, int x, int y, int width, int height, int quality, boolean performInPlace) throws Exception{
 		BitmapFactory.Options options = new BitmapFactory.Options();
-		Bitmap srcBmp = BitmapFactory.decodeFile(inImage.getFilePath(), options);
+		Bitmap srcBmp = BitmapPool.getDefault().decodeFile(inImage.getFilePath(), options);
 		Bitmap dstBmp = Bitmap.createBitmap(srcBmp, x, y, width, height);
 
 		Bitmap.CompressFormat fmt;
@@ -49,14 +54,16 @@ public class ImageUtils {
 			fOut.flush();
 			fOut.close();
 			inImage.setDims(dstBmp.getWidth(), dstBmp.getHeight());
-			dstBmp.recycle();
+			if (dstBmp != srcBmp)
+				dstBmp.recycle();
 
-			if (!srcBmp.isRecycled())
-				srcBmp.recycle();
+			BitmapPool.getDefault().put(srcBmp);
 
 			return inImage;
 		}else{
-			return ImageStorageTools.saveBitmapAndGetImage(dstBmp, true, fmt);
+			Image outImage = ImageStorageTools.saveBitmapAndGetImage(dstBmp, true, fmt);
+			BitmapPool.getDefault().put(srcBmp);
+			return outImage;
 		}
 	}
 
@@ -73,30 +80,20 @@ public class ImageUtils {
 	}
 
 	public static Image resize(Image inImage, int desiredWidth, int desiredHeight, ResizeMode mode, int quality, boolean performInPlace) throws Exception{
-		float width = inImage.getWidth();
-		float height = inImage.getHeight();
-		float ratio;
-
-		Bitmap sourceBitmap;
-		Bitmap scaledBitmap = null;
-		Bitmap resultBitmap = null;
+		String path = inImage.getFilePath();
 
-		BitmapFactory.Options options = new BitmapFactory.Options();
+		// Read the bounds first so we never decode more pixels than the output needs
+		BitmapFactory.Options bounds = Image.getBitmapOptionsWithoutDecoding(path);
+		float width = bounds.outWidth;
+		float height = bounds.outHeight;
+		float ratio;
 
 		if((int)width == desiredWidth && (int)height == desiredHeight)
 			return inImage;
 
-		options.inScaled = true;
-
-		if(width<height){
-			options.inDensity = (int)height;
-			options.inTargetDensity = desiredHeight;
-		}else{
-			options.inDensity = (int)width;
-			options.inTargetDensity = desiredWidth;
-		}
-
-		sourceBitmap = BitmapFactory.decodeFile(inImage.getFilePath(), options);
+		Rect region = null;
+		int targetWidth;
+		int targetHeight;
 
 		switch(mode){
 			case SCALE_AND_CROP:
@@ -118,22 +115,21 @@ public class ImageUtils {
 						ratio = desiredHeight / height;
 					}
 				}
-				width *= ratio;
-				height *= ratio;
-
-				scaledBitmap = Bitmap.createScaledBitmap(
-						sourceBitmap,
-						(int)width,
-						(int)height,
-						true);
-
-				resultBitmap = Bitmap.createBitmap(
-						scaledBitmap,
-						Math.max(0, (int)width/2 - desiredWidth/2),
-						Math.max(0, (int)height/2 - desiredHeight/2),
-						Math.min(desiredWidth, (int)width),
-						Math.min(desiredHeight, (int)height));
-
+				int scaledWidth = (int)(width * ratio);
+				int scaledHeight = (int)(height * ratio);
+
+				targetWidth = Math.min(desiredWidth, scaledWidth);
+				targetHeight = Math.min(desiredHeight, scaledHeight);
+
+				// Map the centered crop of the scaled image back to source pixels,
+				// so only that region is decoded
+				int left = (int)(Math.max(0, scaledWidth/2 - desiredWidth/2) / ratio);
+				int top = (int)(Math.max(0, scaledHeight/2 - desiredHeight/2) / ratio);
+				region = new Rect(
+						left,
+						top,
+						Math.min(bounds.outWidth, left + Math.round(targetWidth / ratio)),
+						Math.min(bounds.outHeight, top + Math.round(targetHeight / ratio)));
 				break;
 			case KEEP_ASPECT:
 				if (width > desiredWidth) {
@@ -146,25 +142,63 @@ public class ImageUtils {
 					width *= ratio;
 					height *= ratio;
 				}
-
-				resultBitmap = Bitmap.createScaledBitmap(
-						sourceBitmap,
-						(int)width,
-						(int)height,
-						true);
+				targetWidth = (int)width;
+				targetHeight = (int)height;
 				break;
 			default:
 				//Use width/height as given
+				targetWidth = desiredWidth;
+				targetHeight = desiredHeight;
+		}
+
+		targetWidth = Math.max(1, targetWidth);
+		targetHeight = Math.max(1, targetHeight);
+
+		Bitmap.CompressFormat fmt = compressFormatFromOptions(bounds);
+
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		Bitmap sourceBitmap = null;
+		Bitmap resultBitmap = null;
+
+		try{
+			if(region != null)
+			{
+				options.inSampleSize = Image.calculateInSampleSize(region.width(), region.height(), targetWidth, targetHeight);
+				sourceBitmap = decodeRegion(path, region, options);
+			}else{
+				options.inSampleSize = Image.calculateInSampleSize(bounds, targetWidth, targetHeight);
+				options.outWidth = bounds.outWidth;
+				options.outHeight = bounds.outHeight;
+				BitmapPool.getDefault().prepareOptions(options);
+				try{
+					sourceBitmap = BitmapFactory.decodeFile(path, options);
+				}catch(IllegalArgumentException e){
+					// The pooled bitmap was rejected by the decoder
+					options.inBitmap = null;
+					sourceBitmap = BitmapFactory.decodeFile(path, options);
+				}
+			}
+
+			if(sourceBitmap == null)
+				throw new Exception("Unable to decode image: " + path);
+
+			// The subsampled bitmap is at most 2x the target on each axis, so this
+			// final scale is the only full-size allocation besides the output
+			if(sourceBitmap.getWidth() == targetWidth && sourceBitmap.getHeight() == targetHeight)
+				resultBitmap = sourceBitmap;
+			else
 				resultBitmap = Bitmap.createScaledBitmap(
 						sourceBitmap,
-						desiredWidth,
-						desiredHeight,
+						targetWidth,
+						targetHeight,
 						true);
-		}
 
-		Bitmap.CompressFormat fmt = compressFormatFromOptions(options);
+			if(resultBitmap != sourceBitmap)
+			{
+				BitmapPool.getDefault().put(sourceBitmap);
+				sourceBitmap = null;
+			}
 
-		try{
 			if(performInPlace)
 			{
 				File f = inImage.getFile();
@@ -178,11 +212,8 @@ public class ImageUtils {
 				return ImageStorageTools.saveBitmapAndGetImage(resultBitmap, true, fmt);
 			}
 		}finally{
-			sourceBitmap.recycle();
-
-			if (scaledBitmap != null && !scaledBitmap.isRecycled()) {
-				scaledBitmap.recycle();
-			}
+			if (sourceBitmap != null && sourceBitmap != resultBitmap)
+				BitmapPool.getDefault().put(sourceBitmap);
 
 			if (resultBitmap != null && !resultBitmap.isRecycled())
 				resultBitmap.recycle();
@@ -190,6 +221,47 @@ public class ImageUtils {
 	}
 
 
+	/*
+		Decodes `region` of the image at `path` at `options.inSampleSize`. Formats that
+		BitmapRegionDecoder does not handle, such as GIF and BMP, are decoded whole at
+		that sample size and cropped in memory instead.
+	*/
+	private static Bitmap decodeRegion(String path, Rect region, BitmapFactory.Options options) throws Exception
+	{
+		BitmapRegionDecoder decoder;
+		try{
+			decoder = BitmapRegionDecoder.newInstance(path, false);
+		}catch(IOException e){
+			decoder = null;
+		}
+
+		if(decoder != null)
+		{
+			try{
+				return BitmapPool.getDefault().decodeRegion(decoder, region, options);
+			}finally{
+				decoder.recycle();
+			}
+		}
+
+		int sampleSize = Math.max(1, options.inSampleSize);
+		Bitmap full = BitmapPool.getDefault().decodeFile(path, options);
+		if(full == null)
+			return null;
+
+		int left = Math.min(full.getWidth() - 1, region.left / sampleSize);
+		int top = Math.min(full.getHeight() - 1, region.top / sampleSize);
+		int width = Math.max(1, Math.min(full.getWidth() - left, region.width() / sampleSize));
+		int height = Math.max(1, Math.min(full.getHeight() - top, region.height() / sampleSize));
+		if(left == 0 && top == 0 && width == full.getWidth() && height == full.getHeight())
+			return full;
+
+		Bitmap cropped = Bitmap.createBitmap(full, left, top, width, height);
+		if(cropped != full)
+			BitmapPool.getDefault().put(full);
+		return cropped;
+	}
+
 	public static Bitmap.CompressFormat compressFormatFromOptions(BitmapFactory.Options options) throws Exception
 	{
 		Bitmap.CompressFormat fmt;
@@ -209,7 +281,7 @@ public class ImageUtils {
 		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 		Bitmap bmp = inImage.getBitmap();
 		bmp.compress(Bitmap.CompressFormat.PNG, 100, byteArrayOutputStream);
-		bmp.recycle();
+		BitmapPool.getDefault().put(bmp);
 		byte[] byteArray = byteArrayOutputStream.toByteArray();
 		return Base64.encodeToString(byteArray, Base64.DEFAULT);
 	}
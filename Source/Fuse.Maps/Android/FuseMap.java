@@ -1,11 +1,16 @@
 package com.fuse.maps;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.MotionEvent;
 import android.view.View;
 import android.util.Log;
+import android.util.LruCache;
 import android.widget.FrameLayout;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
 
 import com.google.android.gms.maps.MapsInitializer;
 import com.google.android.gms.maps.CameraUpdate;
@@ -34,6 +39,7 @@ import com.google.android.gms.maps.model.Dash;
 import com.google.android.gms.maps.model.Gap;
 import com.google.android.gms.maps.model.Dot;
 import com.google.android.gms.maps.model.PatternItem;
+import com.google.android.gms.maps.model.BitmapDescriptor;
 import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLngBounds;
 import java.util.Map;
@@ -41,8 +47,14 @@ import java.util.List;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import com.foreign.Uno.Action_String;
+import com.fuse.android.BitmapPool;
 
 public class FuseMap extends FrameLayout {
 
@@ -57,6 +69,8 @@ public class FuseMap extends FrameLayout {
 		void onAnimationStop();
 		void onCameraChange(double latitude, double longitude, double zoom, double tilt, double bearing);
 		boolean onMarkerPress(Marker m);
+		// Return false to zoom in on the cluster
+		boolean onClusterPress(double lat, double lng, int count);
 		void onPolygonPress(Polygon p);
 		void onPolylinePress(Polyline p);
 		void onCirclePress(Circle c);
@@ -71,6 +85,33 @@ public class FuseMap extends FrameLayout {
 	private Map<Polyline, Integer> _polylines;
 	private Map<Polygon, Integer> _polygons;
 	private Map<Circle, Integer> _circles;
+	private Map<Integer, MarkerState> _markersByUid;
+	private Map<Integer, OverlayState> _overlaysByUid;
+
+	private static final Cap ROUND_CAP = new RoundCap();
+	private static final Cap BUTT_CAP = new ButtCap();
+	private static final Cap SQUARE_CAP = new SquareCap();
+
+	// Clustering; see setClusteringEnabled
+	static final float CLUSTER_CELL_SIZE = 64.0f;
+	static final int MAX_CLUSTER_ZOOM = 17;
+	static final double VIEWPORT_MARGIN = 0.25;
+	static final long CLUSTER_UPDATE_INTERVAL_MS = 150;
+
+	private MarkerClusterer _clusterer;
+	private double[] _itemLatLngs = new double[0];
+	private String[] _itemLabels = new String[0];
+	private String[] _itemIconPaths = new String[0];
+	private float[] _itemAnchors = new float[0];
+	private int[] _itemUids = new int[0];
+	private Map<Long, Marker> _clusterMarkersByKey = new HashMap<Long, Marker>();
+	private Map<Marker, MarkerClusterer.Cluster> _clusterMarkers = new HashMap<Marker, MarkerClusterer.Cluster>();
+	private Map<String, BitmapDescriptor> _clusterIcons = new HashMap<String, BitmapDescriptor>();
+	private boolean _clusterUpdatePending;
+
+	// Marker icons by file path, since many markers tend to share a few icons
+	static final int ICON_CACHE_SIZE = 64;
+	private final LruCache<String, BitmapDescriptor> _icons = new LruCache<String, BitmapDescriptor>(ICON_CACHE_SIZE);
 
 	public FuseMap()
 	{
@@ -82,6 +123,8 @@ public class FuseMap extends FrameLayout {
 		_polylines = new HashMap<Polyline, Integer>();
 		_polygons = new HashMap<Polygon, Integer>();
 		_circles = new HashMap<Circle, Integer>();
+		_markersByUid = new HashMap<Integer, MarkerState>();
+		_overlaysByUid = new HashMap<Integer, OverlayState>();
 
 		_mapView.getMapAsync(new OnMapReadyCallback()
 		{
@@ -130,10 +173,14 @@ public class FuseMap extends FrameLayout {
 			_googleMap.setOnCameraChangeListener(null);
 		if (_mapView!=null)
 			removeView(_mapView);
+		removeCallbacks(_clusterUpdate);
+		_clusterer = null;
 		_callback = null;
 		_googleMap = null;
 		_mapView = null;
 		_markerIDs = null;
+		_markersByUid = null;
+		_overlaysByUid = null;
 		_isAnimating = false;
 	}
 
@@ -236,6 +283,9 @@ public class FuseMap extends FrameLayout {
 
 	private boolean onMarkerPress(Marker marker)
 	{
+		MarkerClusterer.Cluster cluster = _clusterMarkers.get(marker);
+		if (cluster != null)
+			return onClusterPress(cluster);
 		if (_callback != null)
 			return _callback.onMarkerPress(marker);
 		return false;
@@ -266,31 +316,373 @@ public class FuseMap extends FrameLayout {
 
 	/* Markers */
 
-	public String addMarker(double lat, double lng, String label, String iconPath, float iconAnchorX, float iconAnchorY, int uid)
+	private MarkerState createMarker(double lat, double lng, String label, String iconPath, float iconAnchorX, float iconAnchorY, int uid)
 	{
 		MarkerOptions opt = new MarkerOptions().position(new LatLng(lat, lng));
 		if (iconPath!=null)
 		{
-			opt.icon(BitmapDescriptorFactory.fromPath(iconPath)).anchor(iconAnchorX, iconAnchorY);
+			opt.icon(icon(iconPath)).anchor(iconAnchorX, iconAnchorY);
 		}
 		if (label!=null) opt.title(label);
 		Marker m =  _googleMap.addMarker(opt);
 		_markerIDs.put(m, uid);
-		return m.getId();
+		return new MarkerState(m, lat, lng, label, iconPath, iconAnchorX, iconAnchorY);
+	}
+
+	/*
+		What was last applied to a marker, so changes are found without asking the Marker,
+		whose getters each make a call into the Maps SDK.
+	*/
+	static final class MarkerState
+	{
+		final Marker marker;
+		double lat;
+		double lng;
+		String label;
+		String iconPath;
+		float anchorX;
+		float anchorY;
+		boolean iconChanged;
+
+		MarkerState(Marker marker, double lat, double lng, String label, String iconPath, float anchorX, float anchorY)
+		{
+			this.marker = marker;
+			this.lat = lat;
+			this.lng = lng;
+			this.label = label;
+			this.iconPath = iconPath;
+			this.anchorX = anchorX;
+			this.anchorY = anchorY;
+		}
+	}
+
+	/*
+		Makes the markers on the map match the given ones, which are packed in parallel arrays:
+		`latLngs` and `anchors` hold two values per marker, the others one. Markers are matched
+		by uid, so only those that were added, changed or removed since the last call touch the
+		map.
+	*/
+	public void setMarkers(double[] latLngs, String[] labels, String[] iconPaths, float[] anchors, int[] uids)
+	{
+		_itemLatLngs = latLngs;
+		_itemLabels = labels;
+		_itemIconPaths = iconPaths;
+		_itemAnchors = anchors;
+		_itemUids = uids;
+		if (_clusterer != null)
+		{
+			_clusterer.setItems(latLngs);
+			updateClusters();
+		}
+		else
+		{
+			applyMarkers(latLngs, labels, iconPaths, anchors, uids);
+		}
+	}
+
+	private void applyMarkers(double[] latLngs, String[] labels, String[] iconPaths, float[] anchors, int[] uids)
+	{
+		HashMap<Integer, MarkerState> current = new HashMap<Integer, MarkerState>(uids.length * 2);
+		for (int i = 0; i < uids.length; i++)
+		{
+			double lat = latLngs[i * 2];
+			double lng = latLngs[i * 2 + 1];
+			String label = labels[i];
+			String iconPath = iconPaths[i];
+			float anchorX = anchors[i * 2];
+			float anchorY = anchors[i * 2 + 1];
+
+			MarkerState state = _markersByUid.remove(uids[i]);
+			if (state == null)
+			{
+				current.put(uids[i], createMarker(lat, lng, label, iconPath, anchorX, anchorY, uids[i]));
+				continue;
+			}
+
+			Marker m = state.marker;
+			if (state.lat != lat || state.lng != lng)
+			{
+				m.setPosition(new LatLng(lat, lng));
+				state.lat = lat;
+				state.lng = lng;
+			}
+			if (!equal(state.label, label))
+			{
+				m.setTitle(label);
+				state.label = label;
+			}
+			if (state.iconChanged || !equal(state.iconPath, iconPath) || state.anchorX != anchorX || state.anchorY != anchorY)
+			{
+				if (iconPath != null)
+				{
+					m.setIcon(icon(iconPath));
+					m.setAnchor(anchorX, anchorY);
+				}
+				else
+				{
+					m.setIcon(BitmapDescriptorFactory.defaultMarker());
+					m.setAnchor(0.5f, 1.0f);
+				}
+				state.iconPath = iconPath;
+				state.iconChanged = false;
+				state.anchorX = anchorX;
+				state.anchorY = anchorY;
+			}
+			current.put(uids[i], state);
+		}
+
+		// Whatever was not matched above is no longer wanted
+		for (MarkerState state : _markersByUid.values())
+		{
+			_markerIDs.remove(state.marker);
+			state.marker.remove();
+		}
+		_markersByUid = current;
+	}
+
+	/* Clustering */
+
+	/*
+		When enabled, markers passed to `setMarkers` are kept in a MarkerClusterer instead of
+		all being added to the map. Only the markers and clusters inside the viewport, plus a
+		margin of VIEWPORT_MARGIN on every side, exist as Marker objects, and they are
+		recomputed at most every CLUSTER_UPDATE_INTERVAL_MS while the camera moves.
+	*/
+	public void setClusteringEnabled(boolean enabled)
+	{
+		if (enabled == (_clusterer != null))
+			return;
+
+		if (enabled)
+		{
+			// Map points are density independent, so the cell size needs no scaling
+			_clusterer = new MarkerClusterer(CLUSTER_CELL_SIZE, MAX_CLUSTER_ZOOM);
+			_clusterer.setItems(_itemLatLngs);
+			updateClusters();
+		}
+		else
+		{
+			_clusterer = null;
+			removeCallbacks(_clusterUpdate);
+			_clusterUpdatePending = false;
+			applyClusters(new ArrayList<MarkerClusterer.Cluster>());
+			applyMarkers(_itemLatLngs, _itemLabels, _itemIconPaths, _itemAnchors, _itemUids);
+		}
+	}
+
+	private final Runnable _clusterUpdate = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			_clusterUpdatePending = false;
+			updateClusters();
+		}
+	};
+
+	private void scheduleClusterUpdate()
+	{
+		if (_clusterer == null || _clusterUpdatePending)
+			return;
+		_clusterUpdatePending = true;
+		postDelayed(_clusterUpdate, CLUSTER_UPDATE_INTERVAL_MS);
+	}
+
+	private void updateClusters()
+	{
+		if (_clusterer == null || _googleMap == null)
+			return;
+
+		LatLngBounds bounds = _googleMap.getProjection().getVisibleRegion().latLngBounds;
+		double south = bounds.southwest.latitude;
+		double north = bounds.northeast.latitude;
+		double west = bounds.southwest.longitude;
+		double east = bounds.northeast.longitude;
+		double latMargin = (north - south) * VIEWPORT_MARGIN;
+		double lngSpan = west <= east ? east - west : east + 360.0 - west;
+		double lngMargin = lngSpan * VIEWPORT_MARGIN;
+		south = Math.max(-90.0, south - latMargin);
+		north = Math.min(90.0, north + latMargin);
+		if (lngSpan + 2 * lngMargin >= 360.0)
+		{
+			west = -180.0;
+			east = 180.0;
+		}
+		else
+		{
+			west -= lngMargin;
+			east += lngMargin;
+			if (west < -180.0) west += 360.0;
+			if (east > 180.0) east -= 360.0;
+		}
+
+		List<MarkerClusterer.Cluster> all = _clusterer.cluster(south, west, north, east, _googleMap.getCameraPosition().zoom);
+		List<MarkerClusterer.Cluster> clusters = new ArrayList<MarkerClusterer.Cluster>();
+		int singles = 0;
+		for (MarkerClusterer.Cluster c : all)
+		{
+			if (c.count > 1)
+				clusters.add(c);
+			else
+				singles++;
+		}
+
+		double[] latLngs = new double[singles * 2];
+		String[] labels = new String[singles];
+		String[] iconPaths = new String[singles];
+		float[] anchors = new float[singles * 2];
+		int[] uids = new int[singles];
+		int n = 0;
+		for (MarkerClusterer.Cluster c : all)
+		{
+			if (c.count > 1)
+				continue;
+			int i = c.item(0);
+			latLngs[n * 2] = _itemLatLngs[i * 2];
+			latLngs[n * 2 + 1] = _itemLatLngs[i * 2 + 1];
+			labels[n] = _itemLabels[i];
+			iconPaths[n] = _itemIconPaths[i];
+			anchors[n * 2] = _itemAnchors[i * 2];
+			anchors[n * 2 + 1] = _itemAnchors[i * 2 + 1];
+			uids[n] = _itemUids[i];
+			n++;
+		}
+		applyMarkers(latLngs, labels, iconPaths, anchors, uids);
+		applyClusters(clusters);
+	}
+
+	private void applyClusters(List<MarkerClusterer.Cluster> clusters)
+	{
+		HashMap<Long, Marker> current = new HashMap<Long, Marker>(clusters.size() * 2);
+		Map<Marker, MarkerClusterer.Cluster> previous = _clusterMarkers;
+		_clusterMarkers = new HashMap<Marker, MarkerClusterer.Cluster>(clusters.size() * 2);
+		for (MarkerClusterer.Cluster c : clusters)
+		{
+			Marker m = _clusterMarkersByKey.remove(c.key);
+			if (m == null)
+			{
+				m = _googleMap.addMarker(new MarkerOptions()
+					.position(new LatLng(c.latitude, c.longitude))
+					.icon(clusterIcon(c.count))
+					.anchor(0.5f, 0.5f));
+			}
+			else
+			{
+				// Diff against the cluster the marker last showed rather than asking the Marker
+				MarkerClusterer.Cluster old = previous.get(m);
+				if (old == null || old.latitude != c.latitude || old.longitude != c.longitude)
+					m.setPosition(new LatLng(c.latitude, c.longitude));
+				if (old == null || !clusterLabel(old.count).equals(clusterLabel(c.count)))
+					m.setIcon(clusterIcon(c.count));
+			}
+			current.put(c.key, m);
+			_clusterMarkers.put(m, c);
+		}
+
+		for (Marker m : _clusterMarkersByKey.values())
+			m.remove();
+		_clusterMarkersByKey = current;
+	}
+
+	private static String clusterLabel(int count)
+	{
+		return count < 1000 ? String.valueOf(count) : (count / 1000) + "k";
+	}
+
+	private BitmapDescriptor clusterIcon(int count)
+	{
+		String label = clusterLabel(count);
+		BitmapDescriptor icon = _clusterIcons.get(label);
+		if (icon != null)
+			return icon;
+
+		float density = getResources().getDisplayMetrics().density;
+		int size = (int)(40 * density);
+		Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(bitmap);
+		Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setColor(0xFF1E88E5);
+		canvas.drawCircle(size / 2.0f, size / 2.0f, size / 2.0f, paint);
+		paint.setColor(0xFFFFFFFF);
+		paint.setTextSize(14 * density);
+		paint.setTextAlign(Paint.Align.CENTER);
+		canvas.drawText(label, size / 2.0f, size / 2.0f - (paint.descent() + paint.ascent()) / 2, paint);
+
+		icon = BitmapDescriptorFactory.fromBitmap(bitmap);
+		_clusterIcons.put(label, icon);
+		return icon;
+	}
+
+	private boolean onClusterPress(MarkerClusterer.Cluster cluster)
+	{
+		if (_callback != null && _callback.onClusterPress(cluster.latitude, cluster.longitude, cluster.count))
+			return true;
+
+		LatLngBounds.Builder builder = new LatLngBounds.Builder();
+		for (int i = 0; i < cluster.count; i++)
+		{
+			int item = cluster.item(i);
+			builder.include(new LatLng(_clusterer.latitude(item), _clusterer.longitude(item)));
+		}
+		int padding = (int)(_mapView.getMeasuredHeight() * 0.15);
+		_googleMap.animateCamera(CameraUpdateFactory.newLatLngBounds(builder.build(), padding));
+		return true;
+	}
+
+	/* Marker icons */
+
+	/*
+		Returns the descriptor for the image at `path`, so markers that share an icon also
+		share its descriptor instead of each reading the file. The anchor is applied per
+		marker, so it is not part of the key.
+	*/
+	private BitmapDescriptor icon(String path)
+	{
+		BitmapDescriptor icon = _icons.get(path);
+		if (icon == null)
+		{
+			icon = BitmapDescriptorFactory.fromPath(path);
+			_icons.put(path, icon);
+		}
+		return icon;
+	}
+
+	/* Creates descriptors for `iconPaths` ahead of the markers that will use them. */
+	public void prewarmIcons(String[] iconPaths)
+	{
+		for (String path : iconPaths)
+		{
+			if (path != null)
+				icon(path);
+		}
+	}
+
+	/*
+		Forgets all icon descriptors, for when icon files have been rewritten. Markers pick
+		up the new images the next time `setMarkers` is called.
+	*/
+	public void invalidateIcons()
+	{
+		_icons.evictAll();
+		if (_markersByUid == null)
+			return;
+		for (MarkerState state : _markersByUid.values())
+			state.iconChanged = true;
+	}
+
+	private static boolean equal(Object a, Object b)
+	{
+		return a == null ? b == null : a.equals(b);
 	}
 
 	private Cap convertIntCap(int cap)
 	{
-		Cap capObj = null;
 		switch (cap)
 		{
-			case 0: capObj = new RoundCap(); break;
-			case 1: capObj = new ButtCap(); break;
-			case 2: capObj = new SquareCap(); break;
-			default:
-				capObj = new RoundCap();
+			case 1: return BUTT_CAP;
+			case 2: return SQUARE_CAP;
+			default: return ROUND_CAP;
 		}
-		return capObj;
 	}
 
 	private int selectJointType(int joinType)
@@ -362,47 +754,205 @@ public class FuseMap extends FrameLayout {
 		return null;
 	}
 
-	public String AddOverlay(int type, double[] coordinates, int strokeColor, int fillColor, int lineWidth, boolean geodesic, int startCap, int endCap, int joinType, int[] dashPattern, double centerLatitude, double centerLongitude, double radius, int uid)
+	/*
+		Style of an overlay as passed to `setOverlays`, OVERLAY_STYLE_STRIDE ints each:
+		type, stroke color, fill color, line width, geodesic (0 or 1), start cap, end cap,
+		join type, dash length and gap length.
+	*/
+	static final int OVERLAY_STYLE_STRIDE = 10;
+
+	static final class OverlayState
 	{
-		int jointType = selectJointType(joinType);
-		List<PatternItem> pattern = constructPattern(dashPattern);
-		List<LatLng> points = new ArrayList<>();
+		final int[] style;
+		double[] coordinates;
+		double centerLatitude;
+		double centerLongitude;
+		double radius;
+		Object shape;
+		String id;
+
+		OverlayState(int[] style, double[] coordinates, double centerLatitude, double centerLongitude, double radius)
+		{
+			this.style = style;
+			this.coordinates = coordinates;
+			this.centerLatitude = centerLatitude;
+			this.centerLongitude = centerLongitude;
+			this.radius = radius;
+		}
+
+		int type() { return style[0]; }
+		int strokeColor() { return style[1]; }
+		int fillColor() { return style[2]; }
+		int lineWidth() { return style[3]; }
+		boolean geodesic() { return style[4] != 0; }
+		int startCap() { return style[5]; }
+		int endCap() { return style[6]; }
+		int joinType() { return style[7]; }
+		int[] dashPattern() { return new int[] { style[8], style[9] }; }
+	}
+
+	private static List<LatLng> toLatLngs(double[] coordinates)
+	{
+		List<LatLng> points = new ArrayList<LatLng>(coordinates.length / 2);
 		for (int i=0; i<coordinates.length; i+=2)
 			points.add(new LatLng(coordinates[i], coordinates[i+1]));
-		switch (type)
+		return points;
+	}
+
+	private void addOverlay(OverlayState state, int uid)
+	{
+		int jointType = selectJointType(state.joinType());
+		List<PatternItem> pattern = constructPattern(state.dashPattern());
+		switch (state.type())
 		{
 			case 1:
-				Polygon polygon = drawPolygon(points, strokeColor, fillColor, lineWidth, geodesic, jointType, pattern);
+				Polygon polygon = drawPolygon(toLatLngs(state.coordinates), state.strokeColor(), state.fillColor(), state.lineWidth(), state.geodesic(), jointType, pattern);
 				polygon.setClickable(true);
 				_polygons.put(polygon, uid);
-				return polygon.getId();
+				state.shape = polygon;
+				state.id = polygon.getId();
+				break;
 			case 2:
-				Circle circle = drawCircle(new LatLng(centerLatitude, centerLongitude), radius, strokeColor, fillColor, lineWidth, pattern);
+				Circle circle = drawCircle(new LatLng(state.centerLatitude, state.centerLongitude), state.radius, state.strokeColor(), state.fillColor(), state.lineWidth(), pattern);
 				circle.setClickable(true);
 				_circles.put(circle, uid);
-				return circle.getId();
+				state.shape = circle;
+				state.id = circle.getId();
+				break;
 			default:
-				Polyline polyline = drawPolyline(points, strokeColor, lineWidth, geodesic, startCap, endCap, jointType, pattern);
+				Polyline polyline = drawPolyline(toLatLngs(state.coordinates), state.strokeColor(), state.lineWidth(), state.geodesic(), state.startCap(), state.endCap(), jointType, pattern);
 				polyline.setClickable(true);
 				_polylines.put(polyline, uid);
-				return polyline.getId();
+				state.shape = polyline;
+				state.id = polyline.getId();
+				break;
 		}
 	}
 
-	public void clearOverlays()
+	private void removeOverlay(OverlayState state)
 	{
-		for (Polyline polyline : _polylines.keySet()) {
-			polyline.remove();
+		if (state.shape instanceof Polygon)
+		{
+			_polygons.remove(state.shape);
+			((Polygon)state.shape).remove();
+		}
+		else if (state.shape instanceof Circle)
+		{
+			_circles.remove(state.shape);
+			((Circle)state.shape).remove();
 		}
-		_polylines.clear();
-		for (Polygon polygon : _polygons.keySet()) {
-			polygon.remove();
+		else if (state.shape instanceof Polyline)
+		{
+			_polylines.remove(state.shape);
+			((Polyline)state.shape).remove();
+		}
+	}
+
+	/* Applies a changed style and geometry to an existing overlay of the same type. */
+	private void updateOverlay(OverlayState state, int[] style, double[] coordinates, double centerLatitude, double centerLongitude, double radius)
+	{
+		boolean styleChanged = !Arrays.equals(state.style, style);
+		boolean pointsChanged = !Arrays.equals(state.coordinates, coordinates);
+		if (styleChanged)
+			System.arraycopy(style, 0, state.style, 0, OVERLAY_STYLE_STRIDE);
+		if (pointsChanged)
+			state.coordinates = coordinates;
+
+		int jointType = selectJointType(state.joinType());
+		List<PatternItem> pattern = styleChanged ? constructPattern(state.dashPattern()) : null;
+		switch (state.type())
+		{
+			case 1:
+				Polygon polygon = (Polygon)state.shape;
+				if (pointsChanged)
+					polygon.setPoints(toLatLngs(coordinates));
+				if (styleChanged)
+				{
+					polygon.setStrokeColor(state.strokeColor());
+					polygon.setFillColor(state.fillColor());
+					polygon.setStrokeWidth(state.lineWidth());
+					polygon.setStrokeJointType(jointType);
+					polygon.setGeodesic(state.geodesic());
+					polygon.setStrokePattern(pattern);
+				}
+				break;
+			case 2:
+				Circle circle = (Circle)state.shape;
+				if (state.centerLatitude != centerLatitude || state.centerLongitude != centerLongitude)
+				{
+					circle.setCenter(new LatLng(centerLatitude, centerLongitude));
+					state.centerLatitude = centerLatitude;
+					state.centerLongitude = centerLongitude;
+				}
+				if (state.radius != radius)
+				{
+					circle.setRadius(radius);
+					state.radius = radius;
+				}
+				if (styleChanged)
+				{
+					circle.setStrokeColor(state.strokeColor());
+					circle.setFillColor(state.fillColor());
+					circle.setStrokeWidth(state.lineWidth());
+					circle.setStrokePattern(pattern);
+				}
+				break;
+			default:
+				Polyline polyline = (Polyline)state.shape;
+				if (pointsChanged)
+					polyline.setPoints(toLatLngs(coordinates));
+				if (styleChanged)
+				{
+					polyline.setColor(state.strokeColor());
+					polyline.setWidth(state.lineWidth());
+					polyline.setGeodesic(state.geodesic());
+					polyline.setStartCap(convertIntCap(state.startCap()));
+					polyline.setEndCap(convertIntCap(state.endCap()));
+					polyline.setJointType(jointType);
+					polyline.setPattern(pattern);
+				}
+				break;
 		}
-		_polygons.clear();
-		for (Circle circle : _circles.keySet()) {
-			circle.remove();
+	}
+
+	/*
+		Makes the overlays on the map match the given ones. Per overlay, `styles` holds
+		OVERLAY_STYLE_STRIDE ints, `circles` holds the center latitude, center longitude and
+		radius, and `coordinateCounts` the number of values it takes from `coordinates`
+		(two per point). Overlays are matched by uid; unchanged ones are left alone, changed
+		ones are updated in place unless their type changed, and missing ones are removed.
+	*/
+	public void setOverlays(int[] styles, double[] coordinates, int[] coordinateCounts, double[] circles, int[] uids)
+	{
+		HashMap<Integer, OverlayState> current = new HashMap<Integer, OverlayState>(uids.length * 2);
+		int offset = 0;
+		for (int i = 0; i < uids.length; i++)
+		{
+			int[] style = Arrays.copyOfRange(styles, i * OVERLAY_STYLE_STRIDE, (i + 1) * OVERLAY_STYLE_STRIDE);
+			double[] points = Arrays.copyOfRange(coordinates, offset, offset + coordinateCounts[i]);
+			offset += coordinateCounts[i];
+			double centerLatitude = circles[i * 3];
+			double centerLongitude = circles[i * 3 + 1];
+			double radius = circles[i * 3 + 2];
+
+			OverlayState state = _overlaysByUid.remove(uids[i]);
+			if (state != null && state.type() == style[0])
+			{
+				updateOverlay(state, style, points, centerLatitude, centerLongitude, radius);
+			}
+			else
+			{
+				if (state != null)
+					removeOverlay(state);
+				state = new OverlayState(style, points, centerLatitude, centerLongitude, radius);
+				addOverlay(state, uids[i]);
+			}
+			current.put(uids[i], state);
 		}
-		_circles.clear();
+
+		for (OverlayState state : _overlaysByUid.values())
+			removeOverlay(state);
+		_overlaysByUid = current;
 	}
 
 	/* Camera */
@@ -418,8 +968,16 @@ public class FuseMap extends FrameLayout {
 	public void showAllMarkers()
 	{
 		LatLngBounds.Builder builder = new LatLngBounds.Builder();
-		for (Marker marker : _markerIDs.keySet()) {
-			builder.include(marker.getPosition());
+		if (_clusterer != null) {
+			// Most markers are not on the map, so use the items they were made from
+			if (_clusterer.size() == 0)
+				return;
+			for (int i = 0; i < _clusterer.size(); i++)
+				builder.include(new LatLng(_clusterer.latitude(i), _clusterer.longitude(i)));
+		} else {
+			for (Marker marker : _markerIDs.keySet()) {
+				builder.include(marker.getPosition());
+			}
 		}
 		LatLngBounds bounds = builder.build();
 		int width = _mapView.getMeasuredWidth();
@@ -429,28 +987,122 @@ public class FuseMap extends FrameLayout {
 		_googleMap.animateCamera(cu);
 	}
 
+	/* Snapshots */
+
+	static final int SNAPSHOT_PNG = 0;
+	static final int SNAPSHOT_JPEG = 1;
+	static final int SNAPSHOT_WEBP = 2;
+
+	private static ExecutorService _snapshotExecutor;
+
+	// One thread, so snapshots are written one at a time and in order
+	private static synchronized ExecutorService snapshotExecutor()
+	{
+		if (_snapshotExecutor == null)
+			_snapshotExecutor = Executors.newSingleThreadExecutor();
+		return _snapshotExecutor;
+	}
+
 	public void shapshot(final Action_String actionSucess, final Action_String actionError)
 	{
-		SnapshotReadyCallback callback = new SnapshotReadyCallback() {
-			Bitmap bitmap;
+		snapshot(SNAPSHOT_PNG, 90, 0, 0, actionSucess, actionError);
+	}
 
+	/*
+		Takes a snapshot of the map and writes it to a file in one of the SNAPSHOT_* formats.
+		A `maxWidth` or `maxHeight` greater than 0 scales the image down to fit, keeping its
+		aspect ratio. Scaling, encoding and writing happen on a background thread; the
+		callbacks run on the main thread.
+	*/
+	public void snapshot(final int format, final int quality, final int maxWidth, final int maxHeight, final Action_String actionSucess, final Action_String actionError)
+	{
+		final Context context = getContext();
+		final Handler mainHandler = new Handler(Looper.getMainLooper());
+		_googleMap.snapshot(new SnapshotReadyCallback() {
 			@Override
-			public void onSnapshotReady(Bitmap snapshot) {
-				bitmap = snapshot;
-				try {
-					android.content.Context context = com.fuse.Activity.getRootActivity();
-					java.io.File dir = context.getFilesDir();
-					String mPath = dir.getAbsolutePath() + "/map_snapshot.png";
-					FileOutputStream out = new FileOutputStream(mPath);
-					bitmap.compress(Bitmap.CompressFormat.PNG, 90, out);
-					actionSucess.run(mPath);
-				} catch (Exception e) {
-					actionError.run(e.getMessage());
-					e.printStackTrace();
-				}
+			public void onSnapshotReady(final Bitmap snapshot) {
+				snapshotExecutor().execute(new Runnable() {
+					@Override
+					public void run() {
+						String path = null;
+						String error = null;
+						try {
+							path = writeSnapshot(context, snapshot, format, quality, maxWidth, maxHeight);
+						} catch (Exception e) {
+							error = e.getMessage();
+							e.printStackTrace();
+						}
+
+						final String resultPath = path;
+						final String resultError = error;
+						mainHandler.post(new Runnable() {
+							@Override
+							public void run() {
+								if (resultPath != null)
+									actionSucess.run(resultPath);
+								else
+									actionError.run(resultError);
+							}
+						});
+					}
+				});
 			}
-		};
-		_googleMap.snapshot(callback);
+		});
+	}
+
+	static String writeSnapshot(Context context, Bitmap snapshot, int format, int quality, int maxWidth, int maxHeight) throws IOException
+	{
+		if (snapshot == null)
+			throw new IOException("Could not take snapshot of map");
+
+		Bitmap bitmap = snapshot;
+		float scale = 1.0f;
+		if (maxWidth > 0)
+			scale = Math.min(scale, (float)maxWidth / bitmap.getWidth());
+		if (maxHeight > 0)
+			scale = Math.min(scale, (float)maxHeight / bitmap.getHeight());
+		if (scale < 1.0f)
+		{
+			bitmap = Bitmap.createScaledBitmap(snapshot,
+				Math.max(1, Math.round(snapshot.getWidth() * scale)),
+				Math.max(1, Math.round(snapshot.getHeight() * scale)),
+				true);
+			snapshot.recycle();
+		}
+
+		Bitmap.CompressFormat compressFormat;
+		String extension;
+		switch (format)
+		{
+			case SNAPSHOT_JPEG:
+				compressFormat = Bitmap.CompressFormat.JPEG;
+				extension = "jpg";
+				break;
+			case SNAPSHOT_WEBP:
+				compressFormat = Bitmap.CompressFormat.WEBP;
+				extension = "webp";
+				break;
+			default:
+				compressFormat = Bitmap.CompressFormat.PNG;
+				extension = "png";
+				break;
+		}
+
+		java.io.File dir = context.getFilesDir();
+		java.io.File file = new java.io.File(dir, "map_snapshot." + extension);
+		// Written next to the result and renamed, so a previous snapshot being read is never half overwritten
+		java.io.File temp = new java.io.File(dir, "map_snapshot." + extension + ".tmp");
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024);
+		try {
+			if (!bitmap.compress(compressFormat, quality, out))
+				throw new IOException("Could not encode snapshot of map");
+		} finally {
+			out.close();
+			bitmap.recycle();
+		}
+		if (!temp.renameTo(file))
+			throw new IOException("Could not write " + file.getAbsolutePath());
+		return file.getAbsolutePath();
 	}
 
 	public void setPosition(double lat, double lng, double duration)
@@ -499,12 +1151,6 @@ public class FuseMap extends FrameLayout {
 		return _googleMap.getCameraPosition().zoom;
 	}
 
-	public void clear(){
-		for (Marker marker : _markerIDs.keySet())
-			marker.remove();
-		_markerIDs.clear();
-	}
-
 	private void zoomBy(float increment, double duration)
 	{
 		LatLng p = getPosition();
@@ -592,6 +1238,7 @@ public class FuseMap extends FrameLayout {
 
 	private void onCameraChanged(CameraPosition pos)
 	{
+		scheduleClusterUpdate();
 		if (_callback != null)
 			_callback.onCameraChange(pos.target.latitude, pos.target.longitude, pos.zoom, pos.tilt, pos.bearing);
 	}
@@ -637,5 +1284,8 @@ public class FuseMap extends FrameLayout {
 	}
 	public void onLowMemory(){
 		_mapView.onLowMemory();
+		_icons.evictAll();
+		_clusterIcons.clear();
+		BitmapPool.getDefault().clear();
 	}
 }
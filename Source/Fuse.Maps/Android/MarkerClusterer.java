@@ -0,0 +1,185 @@
+package com.fuse.maps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+	Spatial index and grid clustering for map markers. Plain Java, with no dependency
+	on the maps SDK.
+
+	Items are projected to normalized Web Mercator coordinates (0..1 on both axes) and
+	bucketed into a fixed INDEX_SIZE x INDEX_SIZE grid, so a viewport query only visits
+	the buckets it overlaps. Visible items are then grouped into square cells of
+	`cellSize` map points at the current zoom level; every cell holding more than one
+	item becomes a Cluster, the rest are returned as single items.
+
+	Zoom levels are rounded down, so clusters stay stable while zooming within a level.
+	At `maxClusterZoom` and above nothing is clustered.
+*/
+public final class MarkerClusterer
+{
+	static final int INDEX_SIZE = 256;
+
+	public static final class Cluster
+	{
+		/* Identifies the cell, and stays the same for as long as the zoom level does */
+		public final long key;
+		public double latitude;
+		public double longitude;
+		public int count;
+		int[] _items = new int[4];
+
+		Cluster(long key)
+		{
+			this.key = key;
+		}
+
+		/* Index of the `i`th item in this cluster, as passed to `setItems` */
+		public int item(int i) { return _items[i]; }
+
+		void add(int item, double lat, double lng)
+		{
+			if (count == _items.length)
+				_items = Arrays.copyOf(_items, count * 2);
+			_items[count] = item;
+			// Running mean, so the center is right at any point while accumulating
+			count++;
+			latitude += (lat - latitude) / count;
+			longitude += (lng - longitude) / count;
+		}
+	}
+
+	private double[] _latLngs = new double[0];
+	private double[] _x = new double[0];
+	private double[] _y = new double[0];
+	private int[] _bucketStart = new int[INDEX_SIZE * INDEX_SIZE + 1];
+	private int[] _order = new int[0];
+
+	private double _cellSize;
+	private int _maxClusterZoom;
+
+	public MarkerClusterer(double cellSize, int maxClusterZoom)
+	{
+		_cellSize = cellSize;
+		_maxClusterZoom = maxClusterZoom;
+	}
+
+	public int size() { return _order.length; }
+
+	public double latitude(int item) { return _latLngs[item * 2]; }
+	public double longitude(int item) { return _latLngs[item * 2 + 1]; }
+
+	public void setCellSize(double cellSize) { _cellSize = cellSize; }
+	public void setMaxClusterZoom(int zoom) { _maxClusterZoom = zoom; }
+
+	/* Replaces the indexed items. `latLngs` holds a latitude and longitude per item. */
+	public void setItems(double[] latLngs)
+	{
+		int n = latLngs.length / 2;
+		_latLngs = latLngs;
+		_x = new double[n];
+		_y = new double[n];
+		int[] bucket = new int[n];
+		int[] counts = new int[INDEX_SIZE * INDEX_SIZE + 1];
+		for (int i = 0; i < n; i++)
+		{
+			_x[i] = projectX(latLngs[i * 2 + 1]);
+			_y[i] = projectY(latLngs[i * 2]);
+			bucket[i] = indexCell(_y[i]) * INDEX_SIZE + indexCell(_x[i]);
+			counts[bucket[i] + 1]++;
+		}
+
+		// Counting sort by bucket; items of bucket b end up in _order[_bucketStart[b] .. _bucketStart[b+1])
+		for (int b = 0; b < INDEX_SIZE * INDEX_SIZE; b++)
+			counts[b + 1] += counts[b];
+		_bucketStart = counts.clone();
+		_order = new int[n];
+		for (int i = 0; i < n; i++)
+			_order[counts[bucket[i]]++] = i;
+	}
+
+	/*
+		Clusters the items inside the given bounds. `west` may be greater than `east` when
+		the bounds cross the antimeridian. Single items are returned as clusters of one.
+	*/
+	public List<Cluster> cluster(double south, double west, double north, double east, double zoom)
+	{
+		int level = (int)Math.floor(zoom);
+		boolean clustering = level < _maxClusterZoom;
+		double cell = _cellSize / (256.0 * Math.pow(2, level));
+
+		double top = projectY(north);
+		double bottom = projectY(south);
+		HashMap<Long, Cluster> clusters = new HashMap<Long, Cluster>();
+		List<Cluster> result = new ArrayList<Cluster>();
+		if (west <= east)
+		{
+			collect(projectX(west), top, projectX(east), bottom, level, clustering, cell, clusters, result);
+		}
+		else
+		{
+			collect(projectX(west), top, 1.0, bottom, level, clustering, cell, clusters, result);
+			collect(0.0, top, projectX(east), bottom, level, clustering, cell, clusters, result);
+		}
+		return result;
+	}
+
+	private void collect(double left, double top, double right, double bottom, int level, boolean clustering,
+		double cell, HashMap<Long, Cluster> clusters, List<Cluster> result)
+	{
+		int minCol = indexCell(left);
+		int maxCol = indexCell(right);
+		int minRow = indexCell(top);
+		int maxRow = indexCell(bottom);
+		for (int row = minRow; row <= maxRow; row++)
+		{
+			for (int col = minCol; col <= maxCol; col++)
+			{
+				int b = row * INDEX_SIZE + col;
+				for (int k = _bucketStart[b]; k < _bucketStart[b + 1]; k++)
+				{
+					int i = _order[k];
+					double x = _x[i];
+					double y = _y[i];
+					if (x < left || x > right || y < top || y > bottom)
+						continue;
+
+					long key = clustering
+						? cellKey(level, (long)(x / cell), (long)(y / cell))
+						: ~(long)i;
+					Cluster c = clusters.get(key);
+					if (c == null)
+					{
+						c = new Cluster(key);
+						clusters.put(key, c);
+						result.add(c);
+					}
+					c.add(i, _latLngs[i * 2], _latLngs[i * 2 + 1]);
+				}
+			}
+		}
+	}
+
+	private static long cellKey(int level, long col, long row)
+	{
+		return ((long)level << 56) | (col << 28) | row;
+	}
+
+	private static int indexCell(double v)
+	{
+		return Math.max(0, Math.min(INDEX_SIZE - 1, (int)(v * INDEX_SIZE)));
+	}
+
+	static double projectX(double longitude)
+	{
+		return (longitude + 180.0) / 360.0;
+	}
+
+	static double projectY(double latitude)
+	{
+		double sin = Math.sin(Math.toRadians(Math.max(-85.05112878, Math.min(85.05112878, latitude))));
+		return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+	}
+}
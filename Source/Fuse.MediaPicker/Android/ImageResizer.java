@@ -4,6 +4,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.util.Log;
 import androidx.annotation.Nullable;
+import com.fuse.android.BitmapPool;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -22,48 +23,60 @@ class ImageResizer {
 	 * If necessary, resizes the image located in imagePath and then returns the path for the scaled
 	 * image.
 	 *
-	 * <p>If no resizing is needed, returns the path for the original image.
+	 * <p>If no resizing is needed, returns the path for the original image. Only the image header
+	 * is read in that case.
 	 */
 	String resizeImageIfNeeded(
 			String imagePath,
 			@Nullable Double maxWidth,
 			@Nullable Double maxHeight,
 			@Nullable Integer imageQuality) {
-		Bitmap bmp = decodeFile(imagePath);
-		if (bmp == null) {
+		BitmapFactory.Options bounds = new BitmapFactory.Options();
+		bounds.inJustDecodeBounds = true;
+		BitmapFactory.decodeFile(imagePath, bounds);
+		if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
 			return null;
 		}
-		boolean shouldScale =
-				maxWidth != null || maxHeight != null || isImageQualityValid(imageQuality);
-		if (!shouldScale) {
+
+		double originalWidth = bounds.outWidth;
+		double originalHeight = bounds.outHeight;
+		double[] size = targetSize(originalWidth, originalHeight, maxWidth, maxHeight);
+		boolean shouldDownscale = size[0] < originalWidth || size[1] < originalHeight;
+		if (!shouldDownscale && !isImageQualityValid(imageQuality)) {
 			return imagePath;
 		}
+
+		int width = Math.max(1, (int)size[0]);
+		int height = Math.max(1, (int)size[1]);
+
+		// Decode at the smallest power-of-two reduction that is still at least the target size
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inSampleSize = sampleSize(bounds.outWidth, bounds.outHeight, width, height);
+		Bitmap bmp = decodeFile(imagePath, options);
+		if (bmp == null) {
+			return null;
+		}
 		try {
 			String[] pathParts = imagePath.split("/");
 			String imageName = pathParts[pathParts.length - 1];
-			File file = resizedImage(bmp, maxWidth, maxHeight, imageQuality, imageName);
+			File file = resizedImage(bmp, width, height, imageQuality, imageName);
 			copyExif(imagePath, file.getPath());
 			return file.getPath();
 		} catch (IOException e) {
 			throw new RuntimeException(e);
+		} finally {
+			BitmapPool.getDefault().put(bmp);
 		}
 	}
 
-	private File resizedImage(
-			Bitmap bmp, Double maxWidth, Double maxHeight, Integer imageQuality, String outputImageName)
-			throws IOException {
-		double originalWidth = bmp.getWidth() * 1.0;
-		double originalHeight = bmp.getHeight() * 1.0;
-
-		if (!isImageQualityValid(imageQuality)) {
-			imageQuality = 100;
-		}
-
+	/* The size to scale an image to so it fits maxWidth and maxHeight, keeping its aspect ratio */
+	private static double[] targetSize(
+			double originalWidth, double originalHeight, Double maxWidth, Double maxHeight) {
 		boolean hasMaxWidth = maxWidth != null;
 		boolean hasMaxHeight = maxHeight != null;
 
-		Double width = hasMaxWidth ? Math.min(originalWidth, maxWidth) : originalWidth;
-		Double height = hasMaxHeight ? Math.min(originalHeight, maxHeight) : originalHeight;
+		double width = hasMaxWidth ? Math.min(originalWidth, maxWidth) : originalWidth;
+		double height = hasMaxHeight ? Math.min(originalHeight, maxHeight) : originalHeight;
 
 		boolean shouldDownscaleWidth = hasMaxWidth && maxWidth < originalWidth;
 		boolean shouldDownscaleHeight = hasMaxHeight && maxHeight < originalHeight;
@@ -93,11 +106,31 @@ class ImageResizer {
 				}
 			}
 		}
+		return new double[] { width, height };
+	}
 
-		Bitmap scaledBmp = createScaledBitmap(bmp, width.intValue(), height.intValue(), false);
-		File file =
-				createImageOnExternalDirectory("/scaled_" + outputImageName, scaledBmp, imageQuality);
-		return file;
+	private static int sampleSize(int originalWidth, int originalHeight, int width, int height) {
+		int sampleSize = 1;
+		while (originalWidth / (sampleSize * 2) >= width && originalHeight / (sampleSize * 2) >= height) {
+			sampleSize *= 2;
+		}
+		return sampleSize;
+	}
+
+	private File resizedImage(
+			Bitmap bmp, int width, int height, Integer imageQuality, String outputImageName)
+			throws IOException {
+		if (!isImageQualityValid(imageQuality)) {
+			imageQuality = 100;
+		}
+
+		Bitmap scaledBmp = createScaledBitmap(bmp, width, height, false);
+		try {
+			return createImageOnExternalDirectory("/scaled_" + outputImageName, scaledBmp, imageQuality);
+		} finally {
+			if (scaledBmp != bmp)
+				BitmapPool.getDefault().put(scaledBmp);
+		}
 	}
 
 	private File createFile(File externalFilesDirectory, String child) {
@@ -116,8 +149,8 @@ class ImageResizer {
 		exifDataCopier.copyExif(filePathOri, filePathDest);
 	}
 
-	private Bitmap decodeFile(String path) {
-		return BitmapFactory.decodeFile(path);
+	private Bitmap decodeFile(String path, BitmapFactory.Options options) {
+		return BitmapPool.getDefault().decodeFile(path, options);
 	}
 
 	private Bitmap createScaledBitmap(Bitmap bmp, int width, int height, boolean filter) {
@@ -9,6 +9,7 @@ import androidx.annotation.VisibleForTesting;
 import java.io.File;
 import java.util.Map;
 import com.foreign.Uno.Action_String;
+import com.foreign.Uno.Action_int_int_String;
 
 @SuppressWarnings("deprecation")
 public class MediaPicker {
@@ -58,11 +59,12 @@ public class MediaPicker {
 		}
 	}
 
-	public void pickMultiImage(Map<String, Object> arguments, Action_String result, Action_String reject) {
+	public void pickMultiImage(Map<String, Object> arguments, Action_String result, Action_String reject, Action_int_int_String progress) {
 		this.setupCamera(arguments);
 		mediaPickerImpl.setArguments(arguments);
 		mediaPickerImpl.setResult(result);
 		mediaPickerImpl.setReject(reject);
+		mediaPickerImpl.setProgress(progress);
 		mediaPickerImpl.launchMultiPickImageFromGalleryIntent();
 	}
 
@@ -10,6 +10,8 @@ import android.hardware.camera2.CameraCharacteristics;
 import android.media.MediaScannerConnection;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.MediaStore;
 import androidx.annotation.VisibleForTesting;
 import androidx.core.app.ActivityCompat;
@@ -20,7 +22,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import com.foreign.Uno.Action_String;
+import com.foreign.Uno.Action_int_int_String;
 import android.widget.Toast;
 
 enum CameraDevice {
@@ -38,6 +44,10 @@ public class MediaPickerImpl {
 	static final int REQUEST_CODE_CHOOSE_VIDEO_FROM_GALLERY = 2352;
 	static final int REQUEST_CODE_TAKE_VIDEO_WITH_CAMERA = 2353;
 	static final int REQUEST_CAMERA_VIDEO_PERMISSION = 235;
+	// Decoding full-size photos is memory hungry, so only a few are processed at once
+	static final int MAX_PICK_THREADS = Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+	private static final ExecutorService pickExecutor = Executors.newFixedThreadPool(MAX_PICK_THREADS);
+	private static final Handler mainHandler = new Handler(Looper.getMainLooper());
 	private final ImageResizer imageResizer;
 	private final PermissionManager permissionManager;
 	private final FileUriResolver fileUriResolver;
@@ -67,6 +77,7 @@ public class MediaPickerImpl {
 	private Uri pendingCameraMediaUri;
 	private Action_String result;
 	private Action_String reject;
+	private Action_int_int_String progress;
 	private Map<String, Object> arguments;
 	private static MediaPickerImpl instance;
 
@@ -159,6 +170,10 @@ public class MediaPickerImpl {
 		this.reject = reject;
 	}
 
+	void setProgress(Action_int_int_String progress) {
+		this.progress = progress;
+	}
+
 	CameraDevice getCameraDevice() {
 		return cameraDevice;
 	}
@@ -368,7 +383,7 @@ public class MediaPickerImpl {
 
 	private void handleChooseMultiImageResult(int resultCode, Intent intent) {
 		if (resultCode == Activity.RESULT_OK && intent != null) {
-			ArrayList<String> paths = new ArrayList<>();
+			ArrayList<Uri> uris = new ArrayList<>();
 			if (intent.getClipData() != null) {
 				int maxImages = (int)this.arguments.get("maxImages");
 				if (maxImages > 0 && intent.getClipData().getItemCount() > maxImages) {
@@ -378,12 +393,12 @@ public class MediaPickerImpl {
 					return;
 				}
 				for (int i = 0; i < intent.getClipData().getItemCount(); i++) {
-					paths.add(fileUtils.getPathFromUri(com.fuse.Activity.getRootActivity(), intent.getClipData().getItemAt(i).getUri()));
+					uris.add(intent.getClipData().getItemAt(i).getUri());
 				}
 			} else {
-				paths.add(fileUtils.getPathFromUri(com.fuse.Activity.getRootActivity(), intent.getData()));
+				uris.add(intent.getData());
 			}
-			handleMultiImageResult(paths, false);
+			handleMultiImageResult(uris);
 			return;
 		}
 
@@ -430,19 +445,70 @@ public class MediaPickerImpl {
 		finishWithError("User cancelled choosing a picture");
 	}
 
-	private void handleMultiImageResult(ArrayList<String> paths, boolean shouldDeleteOriginalIfScaled) {
-		if (this.arguments != null) {
-			ArrayList<String> finalPath = new ArrayList<>();
-			for (int i = 0; i < paths.size(); i++) {
-				String finalImagePath = getResizedImagePath(paths.get(i));
-				if (finalImagePath != null && !finalImagePath.equals(paths.get(i)) && shouldDeleteOriginalIfScaled) {
-					new File(paths.get(i)).delete();
+	/*
+		Copies and resizes the picked images on pickExecutor. Each image is reported to
+		`progress` on the main thread as soon as it is done, and the full list, in pick
+		order, goes to `result` once all of them are.
+	*/
+	private void handleMultiImageResult(final ArrayList<Uri> uris) {
+		final int total = uris.size();
+		final String[] finalPaths = new String[total];
+		final AtomicInteger remaining = new AtomicInteger(total);
+		final Map<String, Object> arguments = this.arguments;
+		final Action_String result = this.result;
+		final Action_String reject = this.reject;
+		final Action_int_int_String progress = this.progress;
+		final boolean[] failed = new boolean[1];
+
+		for (int i = 0; i < total; i++) {
+			final int index = i;
+			final Uri uri = uris.get(i);
+			pickExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					String path = null;
+					String error = null;
+					try {
+						path = fileUtils.getPathFromUri(com.fuse.Activity.getRootActivity(), uri);
+						if (arguments != null && path != null) {
+							path = getResizedImagePath(path, arguments);
+						}
+					} catch (Throwable e) {
+						// Errors such as OutOfMemoryError must settle the promise too
+						error = "Could not read the picked image: " + e.getMessage();
+					}
+
+					final String finalPath = path;
+					final String finalError = error;
+					mainHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							if (failed[0]) {
+								return;
+							}
+							if (finalError != null) {
+								failed[0] = true;
+								if (reject != null) {
+									reject.run(finalError);
+								}
+								return;
+							}
+
+							finalPaths[index] = finalPath;
+							if (progress != null) {
+								progress.run(index, total, finalPath);
+							}
+							if (remaining.decrementAndGet() == 0 && result != null) {
+								ArrayList<String> paths = new ArrayList<>(total);
+								for (String p : finalPaths) {
+									paths.add(p);
+								}
+								finishWithListSuccess(result, paths);
+							}
+						}
+					});
 				}
-				finalPath.add(i, finalImagePath);
-			}
-			finishWithListSuccess(finalPath);
-		} else {
-			finishWithListSuccess(paths);
+			});
 		}
 	}
 
@@ -460,9 +526,13 @@ public class MediaPickerImpl {
 	}
 
 	private String getResizedImagePath(String path) {
-		Double maxWidth = (double)this.arguments.get("maxWidth");
-		Double maxHeight = (double)this.arguments.get("maxHeight");
-		Integer imageQuality = (int)this.arguments.get("imageQuality");
+		return getResizedImagePath(path, this.arguments);
+	}
+
+	private String getResizedImagePath(String path, Map<String, Object> arguments) {
+		Double maxWidth = (double)arguments.get("maxWidth");
+		Double maxHeight = (double)arguments.get("maxHeight");
+		Integer imageQuality = (int)arguments.get("imageQuality");
 
 		return imageResizer.resizeImageIfNeeded(path, maxWidth, maxHeight, imageQuality);
 	}
@@ -478,10 +548,7 @@ public class MediaPickerImpl {
 		result.run(imagePath);
 	}
 
-	private void finishWithListSuccess(ArrayList<String> imagePaths) {
-		if (result == null) {
-			return;
-		}
+	private static void finishWithListSuccess(Action_String result, ArrayList<String> imagePaths) {
 		String commaseparatedlist = imagePaths.toString();
 		commaseparatedlist = commaseparatedlist.replace("[", "").replace("]", "").replace(" ", "");
 		result.run(commaseparatedlist);
@@ -2,23 +2,13 @@ package com.fuse.PushNotifications;
 
 import android.app.Notification;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.os.AsyncTask;
 import androidx.core.app.NotificationCompat;
-import android.util.Log;
 
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-
-import static java.net.HttpURLConnection.HTTP_OK;
-
-public class BigPictureStyleHttp extends AsyncTask<String, Void, Bitmap>
+public class BigPictureStyleHttp implements NotificationImageDownloader.Callback
 {
-	private Exception exception;
+	private Context _context;
 	private NotificationManager _notificationManager;
 	private int _id;
 	private NotificationCompat.Builder _notificationBuilder;
@@ -39,9 +29,10 @@ public class BigPictureStyleHttp extends AsyncTask<String, Void, Bitmap>
 
 	}
 
-	public BigPictureStyleHttp(NotificationManager notificationManager, int id, NotificationCompat.Builder notificationBuilder,
+	public BigPictureStyleHttp(Context context, NotificationManager notificationManager, int id, NotificationCompat.Builder notificationBuilder,
 							   NotificationCompat.BigPictureStyle style, String sound)
 	{
+		this._context = context;
 		this._notificationManager = notificationManager;
 		this._id = id;
 		this._notificationBuilder = notificationBuilder;
@@ -49,56 +40,14 @@ public class BigPictureStyleHttp extends AsyncTask<String, Void, Bitmap>
 		this._sound = sound;
 	}
 
-	@Override
-	protected Bitmap doInBackground(String... params)
+	public void execute(String url)
 	{
-		return downloadBitmap(params[0]);
+		NotificationImageDownloader.getDefault(_context).load(url, this);
 	}
 
 	@Override
-	protected void onPostExecute(Bitmap bm)
+	public void onImage(Bitmap bitmap)
 	{
-		launchNotification(bm);
+		launchNotification(bitmap);
 	}
-
-	private Bitmap downloadBitmap(String url)
-	{
-		HttpURLConnection urlConnection = null;
-		try
-		{
-			URL uri = new URL(url);
-			urlConnection = (HttpURLConnection) uri.openConnection();
-
-			int statusCode = urlConnection.getResponseCode();
-			if (statusCode != HTTP_OK)
-			{
-				return null;
-			}
-
-			InputStream inputStream = urlConnection.getInputStream();
-			if (inputStream != null)
-			{
-				Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-				return bitmap;
-			}
-		}
-		catch (Exception e)
-		{
-			Log.d("URLCONNECTIONERROR", e.toString());
-			if (urlConnection != null)
-			{
-				urlConnection.disconnect();
-			}
-			Log.w("Fuse.PushNotifications", "Error downloading image from " + url);
-		}
-		finally
-		{
-			if (urlConnection != null)
-			{
-				urlConnection.disconnect();
-			}
-		}
-		return null;
-	}
-
 }
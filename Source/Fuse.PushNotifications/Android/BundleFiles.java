@@ -4,6 +4,8 @@ import android.content.Context;
 import android.content.res.AssetManager;
 import android.util.Log;
 
+import com.fuse.android.MappedBundleFile;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
@@ -12,13 +14,25 @@ import java.util.HashMap;
 
 public class BundleFiles
 {
-	private static HashMap<String, HashMap<String, String>> bundled = null;
+	// Written once, after the index is fully built, so readers never see a partial map
+	private static volatile HashMap<String, HashMap<String, String>> bundled = null;
 
-	private static void PopulateBundleInfo(Context context)
+	private static HashMap<String, HashMap<String, String>> GetBundleInfo(Context context)
 	{
-		if (bundled != null) return;
+		HashMap<String, HashMap<String, String>> result = bundled;
+		if (result != null) return result;
 
-		bundled = new HashMap<>();
+		synchronized (BundleFiles.class)
+		{
+			if (bundled == null)
+				bundled = ReadBundleInfo(context);
+			return bundled;
+		}
+	}
+
+	private static HashMap<String, HashMap<String, String>> ReadBundleInfo(Context context)
+	{
+		HashMap<String, HashMap<String, String>> result = new HashMap<>();
 		BufferedReader reader = null;
 		try
 		{
@@ -26,19 +40,24 @@ public class BundleFiles
 			String mLine;
 			while ((mLine = reader.readLine()) != null)
 			{
-				String[] split = mLine.split(":");
-				if (split.length > 1)
+				// Each line is `package:name:file:name:file...`
+				int end = mLine.indexOf(':');
+				if (end < 0)
+					continue;
+
+				String pkg = mLine.substring(0, end);
+				HashMap<String, String> bundle = new HashMap<>();
+				while (end >= 0)
 				{
-					String pkg = split[0];
-					HashMap<String, String> bundle = new HashMap<>();
-					for (int i = 1; i < split.length; i += 2)
-					{
-						String bdlName = split[i];
-						String fileName = split[i + 1];
-						bundle.put(bdlName, fileName);
-					}
-					bundled.put(pkg, bundle);
+					int nameStart = end + 1;
+					int nameEnd = mLine.indexOf(':', nameStart);
+					if (nameEnd < 0)
+						break;
+					end = mLine.indexOf(':', nameEnd + 1);
+					String fileName = end < 0 ? mLine.substring(nameEnd + 1) : mLine.substring(nameEnd + 1, end);
+					bundle.put(mLine.substring(nameStart, nameEnd), fileName);
 				}
+				result.put(pkg, bundle);
 			}
 		}
 		catch (IOException e)
@@ -59,12 +78,22 @@ public class BundleFiles
 				}
 			}
 		}
+		return result;
+	}
+
+	/* Reads the index on a background thread, so the first notification does not have to. */
+	public static void Preload(final Context context)
+	{
+		if (bundled != null) return;
+
+		new Thread(new Runnable() { public void run() {
+			GetBundleInfo(context);
+		}}).start();
 	}
 
 	public static String GetPathToBundled(Context context, String packageName, String name)
 	{
-		PopulateBundleInfo(context);
-		HashMap<String, String> pkg = bundled.get(packageName);
+		HashMap<String, String> pkg = GetBundleInfo(context).get(packageName);
 		if (pkg != null)
 			return pkg.get(name);
 		else
@@ -78,7 +107,7 @@ public class BundleFiles
 		AssetManager am = context.getAssets();
 		try
 		{
-			return am.open(bdlPath);
+			return MappedBundleFile.open(am, bdlPath);
 		}
 		catch (IOException e)
 		{
@@ -0,0 +1,246 @@
+package com.fuse.PushNotifications;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.net.HttpURLConnection.HTTP_OK;
+
+/*
+	Downloads and decodes notification images for BigPictureStyle.
+
+	- A small fixed pool of workers bounds the number of concurrent downloads, and
+	  requests for a URL that is already being fetched share that download.
+	- Connections are not disconnected after a successful read, so HttpURLConnection
+	  can keep them alive and reuse them for the next image from the same host.
+	- Images are stored in a disk cache named by the SHA-256 of the URL, and the
+	  cache is trimmed to `maxCacheBytes`, oldest first.
+	- Images are decoded with an inSampleSize chosen from their bounds, so they are
+	  never decoded much larger than the big picture area.
+*/
+public class NotificationImageDownloader
+{
+	private static final String TAG = "Fuse.PushNotifications";
+
+	public interface Callback
+	{
+		// `bitmap` is null if the image could not be downloaded or decoded
+		void onImage(Bitmap bitmap);
+	}
+
+	private static NotificationImageDownloader _default;
+
+	public static synchronized NotificationImageDownloader getDefault(Context context)
+	{
+		if (_default == null)
+		{
+			DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+			// The expanded big picture is the notification width at roughly a 2:1 aspect
+			int width = Math.min(metrics.widthPixels, metrics.heightPixels);
+			_default = new NotificationImageDownloader(
+				new File(context.getCacheDir(), "push-images"),
+				width, width / 2,
+				10 * 1024 * 1024,
+				Executors.newFixedThreadPool(2));
+		}
+		return _default;
+	}
+
+	private final File _cacheDir;
+	private final int _targetWidth;
+	private final int _targetHeight;
+	private final long _maxCacheBytes;
+	private final ExecutorService _executor;
+	private final HashMap<String, List<Callback>> _pending = new HashMap<String, List<Callback>>();
+
+	public NotificationImageDownloader(File cacheDir, int targetWidth, int targetHeight, long maxCacheBytes, ExecutorService executor)
+	{
+		_cacheDir = cacheDir;
+		_targetWidth = targetWidth;
+		_targetHeight = targetHeight;
+		_maxCacheBytes = maxCacheBytes;
+		_executor = executor;
+	}
+
+	public void load(final String url, Callback callback)
+	{
+		synchronized (_pending)
+		{
+			List<Callback> waiting = _pending.get(url);
+			if (waiting != null)
+			{
+				waiting.add(callback);
+				return;
+			}
+			waiting = new ArrayList<Callback>();
+			waiting.add(callback);
+			_pending.put(url, waiting);
+		}
+
+		_executor.execute(new Runnable() { public void run() {
+			Bitmap bitmap = null;
+			try
+			{
+				bitmap = decode(fetch(url));
+			}
+			catch (Exception e)
+			{
+				Log.w(TAG, "Error downloading image from " + url + ": " + e);
+			}
+			finally
+			{
+				// Also reached on an Error such as OutOfMemoryError, so later loads of this URL never hang
+				List<Callback> waiting;
+				synchronized (_pending)
+				{
+					waiting = _pending.remove(url);
+				}
+				for (Callback c : waiting)
+					c.onImage(bitmap);
+			}
+		}});
+	}
+
+	File fetch(String url) throws IOException
+	{
+		File cached = new File(_cacheDir, cacheKey(url));
+		if (cached.exists())
+		{
+			// Touch it so trimming evicts least recently used images first
+			cached.setLastModified(System.currentTimeMillis());
+			return cached;
+		}
+
+		if (!_cacheDir.exists() && !_cacheDir.mkdirs())
+			throw new IOException("Could not create " + _cacheDir);
+
+		File temp = new File(_cacheDir, cached.getName() + ".tmp");
+		boolean stored = false;
+		HttpURLConnection urlConnection = (HttpURLConnection) new URL(url).openConnection();
+		try
+		{
+			if (urlConnection.getResponseCode() != HTTP_OK)
+				throw new IOException("HTTP " + urlConnection.getResponseCode());
+
+			InputStream in = urlConnection.getInputStream();
+			OutputStream out = new FileOutputStream(temp);
+			try
+			{
+				byte[] buffer = new byte[16 * 1024];
+				int read;
+				while ((read = in.read(buffer)) != -1)
+					out.write(buffer, 0, read);
+			}
+			finally
+			{
+				// Closing a fully read stream returns the connection to the keep-alive pool
+				in.close();
+				out.close();
+			}
+
+			if (!temp.renameTo(cached))
+				throw new IOException("Could not store " + cached);
+			stored = true;
+		}
+		catch (IOException e)
+		{
+			urlConnection.disconnect();
+			throw e;
+		}
+		finally
+		{
+			// trimCache never evicts .tmp files, so a failed download must not leave one behind
+			if (!stored)
+				temp.delete();
+		}
+
+		trimCache();
+		return cached;
+	}
+
+	Bitmap decode(File file)
+	{
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeFile(file.getPath(), options);
+		if (options.outWidth <= 0 || options.outHeight <= 0)
+		{
+			file.delete();
+			return null;
+		}
+
+		options.inSampleSize = 1;
+		while (options.outWidth / (options.inSampleSize * 2) >= _targetWidth
+			&& options.outHeight / (options.inSampleSize * 2) >= _targetHeight)
+			options.inSampleSize *= 2;
+
+		options.inJustDecodeBounds = false;
+		return BitmapFactory.decodeFile(file.getPath(), options);
+	}
+
+	void trimCache()
+	{
+		File[] files = _cacheDir.listFiles();
+		if (files == null)
+			return;
+
+		long total = 0;
+		for (File f : files)
+		{
+			// Downloads in progress are never evicted
+			if (!f.getName().endsWith(".tmp"))
+				total += f.length();
+		}
+		if (total <= _maxCacheBytes)
+			return;
+
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File a, File b) {
+				return Long.compare(a.lastModified(), b.lastModified());
+			}
+		});
+		for (File f : files)
+		{
+			if (total <= _maxCacheBytes)
+				break;
+			if (f.getName().endsWith(".tmp"))
+				continue;
+			total -= f.length();
+			f.delete();
+		}
+	}
+
+	static String cacheKey(String url)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes("UTF-8"));
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest)
+				sb.append(String.format("%02x", b & 0xFF));
+			return sb.toString();
+		}
+		catch (Exception e)
+		{
+			return Integer.toHexString(url.hashCode());
+		}
+	}
+}
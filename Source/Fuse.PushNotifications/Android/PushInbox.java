@@ -0,0 +1,156 @@
+package com.fuse.PushNotifications;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+	Bounded, lock-free queue of push payloads that arrived while the app was not
+	interactive.
+
+	Payloads are kept as the raw JSON strings they arrived as, and are only turned
+	into Bundles when they are delivered. Each slot carries a sequence number, so
+	producers (the messaging service, possibly on several threads) and the consumer
+	claim slots with a single CAS each and never block one another.
+
+	- A payload whose message ID is already queued is dropped, since it is the same
+	  message delivered twice.
+	- When the inbox is full the OverflowPolicy decides whether the oldest queued
+	  payload or the incoming one is dropped.
+*/
+public final class PushInbox
+{
+	public enum OverflowPolicy
+	{
+		DROP_OLDEST,
+		DROP_NEWEST
+	}
+
+	public static final class Entry
+	{
+		public final String messageId;
+		public final String payload;
+
+		Entry(String messageId, String payload)
+		{
+			this.messageId = messageId;
+			this.payload = payload;
+		}
+	}
+
+	private final int _mask;
+	private final AtomicReferenceArray<Entry> _slots;
+	private final AtomicLongArray _sequences;
+	private final AtomicLong _head = new AtomicLong();
+	private final AtomicLong _tail = new AtomicLong();
+	private final Set<String> _queuedIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final AtomicLong _dropped = new AtomicLong();
+	private volatile OverflowPolicy _policy;
+
+	/* `capacity` is rounded up to the next power of two */
+	public PushInbox(int capacity, OverflowPolicy policy)
+	{
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		_mask = size - 1;
+		_slots = new AtomicReferenceArray<Entry>(size);
+		_sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			_sequences.set(i, i);
+		_policy = policy;
+	}
+
+	public int capacity() { return _mask + 1; }
+	public long droppedCount() { return _dropped.get(); }
+
+	public OverflowPolicy getOverflowPolicy() { return _policy; }
+	public void setOverflowPolicy(OverflowPolicy policy) { _policy = policy; }
+
+	/*
+		Queues `payload`. Returns false if it was dropped, either because `messageId`
+		is already queued or because the inbox is full under DROP_NEWEST.
+	*/
+	public boolean offer(String messageId, String payload)
+	{
+		if (messageId != null && !_queuedIds.add(messageId))
+		{
+			_dropped.incrementAndGet();
+			return false;
+		}
+
+		Entry entry = new Entry(messageId, payload);
+		while (!tryOffer(entry))
+		{
+			if (_policy == OverflowPolicy.DROP_NEWEST)
+			{
+				if (messageId != null)
+					_queuedIds.remove(messageId);
+				_dropped.incrementAndGet();
+				return false;
+			}
+
+			// Make room by dropping the oldest payload. If a consumer got to it first the
+			// slot is free already and the next attempt succeeds.
+			if (poll() != null)
+				_dropped.incrementAndGet();
+		}
+		return true;
+	}
+
+	private boolean tryOffer(Entry entry)
+	{
+		while (true)
+		{
+			long tail = _tail.get();
+			int index = (int)tail & _mask;
+			long diff = _sequences.get(index) - tail;
+			if (diff == 0)
+			{
+				if (_tail.compareAndSet(tail, tail + 1))
+				{
+					_slots.set(index, entry);
+					_sequences.set(index, tail + 1);
+					return true;
+				}
+			}
+			else if (diff < 0)
+			{
+				return false;
+			}
+			// Another producer claimed this slot first; retry with the new tail
+		}
+	}
+
+	/* Removes and returns the oldest queued payload, or null if there is none. */
+	public Entry poll()
+	{
+		while (true)
+		{
+			long head = _head.get();
+			int index = (int)head & _mask;
+			long diff = _sequences.get(index) - (head + 1);
+			if (diff == 0)
+			{
+				if (_head.compareAndSet(head, head + 1))
+				{
+					Entry entry = _slots.getAndSet(index, null);
+					_sequences.set(index, head + _mask + 1);
+					if (entry.messageId != null)
+						_queuedIds.remove(entry.messageId);
+					return entry;
+				}
+			}
+			else if (diff < 0)
+			{
+				return null;
+			}
+		}
+	}
+
+	public boolean isEmpty()
+	{
+		return _head.get() >= _tail.get();
+	}
+}
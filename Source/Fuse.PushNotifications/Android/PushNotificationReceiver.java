@@ -1,7 +1,6 @@
 package com.fuse.PushNotifications;
 
 import android.os.Bundle;
-import java.util.ArrayList;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -15,7 +14,8 @@ import org.json.JSONException;
 import android.util.Log;
 
 public class PushNotificationReceiver extends FirebaseMessagingService {
-	public static ArrayList<Bundle> _cachedBundles = new ArrayList<Bundle>();
+	// Payloads received while the app is not interactive, delivered by AndroidImpl once it is
+	public static final PushInbox Inbox = new PushInbox(256, PushInbox.OverflowPolicy.DROP_OLDEST);
 	public static boolean InForeground = false;
 	public static String ACTION = "fuseBackgroundNotify";
 	static int _notificationID = -1;
@@ -26,6 +26,11 @@ public class PushNotificationReceiver extends FirebaseMessagingService {
 		super();
 	}
 	@Override
+	public void onCreate() {
+		super.onCreate();
+		BundleFiles.Preload(getApplicationContext());
+	}
+	@Override
 	public void onNewToken(String refreshedToken) {
 		super.onNewToken(refreshedToken);
 		com.foreign.Fuse.PushNotifications.AndroidImpl.RegistrationIDUpdated(refreshedToken);
@@ -33,39 +38,45 @@ public class PushNotificationReceiver extends FirebaseMessagingService {
 	@Override
 	public void onMessageReceived(RemoteMessage message)
 	{
-		synchronized (lock) {
-			Bundle bundle = new Bundle();
-
-			try {
-				//reconstruct JSON string from Map and test it
-				String jsonStr = "{";
-				for (Map.Entry<String, String> entry : message.getData().entrySet()) {
-					jsonStr += "\"" + entry.getKey() + "\":";
-					if (entry.getValue().charAt(0) == '{') {
-						jsonStr += entry.getValue() + ",";
-					} else {
-						jsonStr += "\"" + entry.getValue() + "\"" + ",";
-					}
+		String jsonStr;
+		JSONObject jsonObj = null;
+		try {
+			//reconstruct JSON string from Map and test it
+			StringBuilder sb = new StringBuilder("{");
+			for (Map.Entry<String, String> entry : message.getData().entrySet()) {
+				if (sb.length() > 1)
+					sb.append(',');
+				sb.append('"').append(entry.getKey()).append("\":");
+				String value = entry.getValue();
+				if (value.length() > 0 && value.charAt(0) == '{') {
+					sb.append(value);
+				} else {
+					sb.append('"').append(value).append('"');
 				}
-				jsonStr = jsonStr.replaceAll(",$", "");
-				jsonStr += "}";
-
-				JSONObject jsonObj = new JSONObject(jsonStr);
+			}
+			sb.append('}');
 
-				jsonStr = jsonObj.toString();
+			jsonObj = new JSONObject(sb.toString());
+			jsonStr = jsonObj.toString();
+		} catch (JSONException je) {
+			Log.d("onMessageReceived", "BAD JSON");
 
-				bundle = jsonStrToBundle(jsonStr);
+			//fallback to older implementation, which keeps every value as a string
+			jsonStr = new JSONObject(message.getData()).toString();
+		}
 
-			} catch (JSONException je) {
-				Log.d("onMessageReceived", "BAD JSON");
+		String messageId = message.getMessageId();
 
-				//fallback to older implementation
-				for (Map.Entry<String, String> entry : message.getData().entrySet()) {
-					bundle.putString(entry.getKey(), entry.getValue());
-				}
-			}
+		// Silent pushes that arrive in the background are only queued, so there is no
+		// need to build their Bundle until they are delivered
+		if (!InForeground && jsonObj != null && !jsonObj.has("notification") && !jsonObj.has("aps")) {
+			Inbox.offer(messageId, jsonStr);
+			return;
+		}
 
-			com.foreign.Fuse.PushNotifications.AndroidImpl.OnNotificationRecieved(this, message.getFrom(), bundle);
+		synchronized (lock) {
+			Bundle bundle = jsonStrToBundle(jsonStr);
+			com.foreign.Fuse.PushNotifications.AndroidImpl.OnNotificationRecieved(this, message.getFrom(), messageId, bundle);
 		}
 	}
 
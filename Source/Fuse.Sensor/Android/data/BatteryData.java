@@ -15,6 +15,11 @@ public class BatteryData {
     protected final int status;
     protected final int health;
 
+    // The status strings are constants, looked up once instead of on every read
+    private final String pluggedString;
+    private final String batteryStatusString;
+    private final String batteryHealthString;
+
     public BatteryData(int level, int scale, int temperature, int voltage, int plugged, int status, int health) {
         this.level = level;
         this.scale = scale;
@@ -23,6 +28,9 @@ public class BatteryData {
         this.plugged = plugged;
         this.status = status;
         this.health = health;
+        this.pluggedString = getPluggedString(plugged);
+        this.batteryStatusString = getBatteryStatusString(status);
+        this.batteryHealthString = getBatteryHealthString(health);
     }
 
     public float getLevelRatio() {
@@ -65,15 +73,15 @@ public class BatteryData {
     }
 
     public String getPluggedString() {
-        return getPluggedString(this.plugged);
+        return this.pluggedString;
     }
 
     public String getBatteryStatusString() {
-        return getBatteryStatusString(this.status);
+        return this.batteryStatusString;
     }
 
     public String getBatteryHealthString() {
-        return getBatteryHealthString(this.health);
+        return this.batteryHealthString;
     }
 
     private static String getPluggedString(int pluggedType) {
@@ -118,7 +126,7 @@ public class BatteryData {
         }
     }
 
-    private String getBatteryHealthString(int health) {
+    private static String getBatteryHealthString(int health) {
 
         switch (health) {
 
@@ -0,0 +1,88 @@
+package com.fuse.sensorkit;
+
+/*
+    Complementary filter that fuses gyroscope, accelerometer and (optionally)
+    magnetometer readings into roll, pitch and yaw in radians.
+
+    The integrated gyroscope rates are responsive but drift, while the angles
+    measured from gravity and the magnetic field are noisy but stable. Every update
+    blends the two, with the gyroscope trusted for changes faster than
+    `timeConstantMs`.
+*/
+public class ComplementaryFusion {
+
+    private final float mTimeConstantMs;
+    private final float[] mAngles = new float[3];
+    private double mLastTime;
+    private boolean mInitialized;
+
+    public ComplementaryFusion(float timeConstantMs) {
+        mTimeConstantMs = timeConstantMs;
+    }
+
+    /*
+        `gyro` is in rad/s, `accel` in any unit and `mag` may be null. Writes roll,
+        pitch and yaw to `out` at `offset`.
+    */
+    public void update(double timeMs, float[] gyro, float[] accel, float[] mag, double[] out, int offset) {
+        float ax = accel[0], ay = accel[1], az = accel[2];
+        float roll = (float)Math.atan2(ay, az);
+        float pitch = (float)Math.atan2(-ax, Math.sqrt(ay * ay + az * az));
+        float yaw = mInitialized ? mAngles[2] : 0.0f;
+        boolean hasHeading = mag != null;
+        if (hasHeading) {
+            yaw = heading(roll, pitch, mag);
+        }
+
+        if (!mInitialized) {
+            mAngles[0] = roll;
+            mAngles[1] = pitch;
+            mAngles[2] = yaw;
+            mLastTime = timeMs;
+            mInitialized = true;
+        } else {
+            float dt = (float)Math.max(0.0, timeMs - mLastTime);
+            mLastTime = timeMs;
+            float alpha = mTimeConstantMs / (mTimeConstantMs + dt);
+            float dts = dt / 1000.0f;
+
+            mAngles[0] = blend(mAngles[0] + gyro[0] * dts, roll, alpha);
+            mAngles[1] = blend(mAngles[1] + gyro[1] * dts, pitch, alpha);
+            float integratedYaw = mAngles[2] + gyro[2] * dts;
+            mAngles[2] = hasHeading ? blend(integratedYaw, yaw, alpha) : wrap(integratedYaw);
+        }
+
+        out[offset] = mAngles[0];
+        out[offset + 1] = mAngles[1];
+        out[offset + 2] = mAngles[2];
+    }
+
+    public void reset() {
+        mInitialized = false;
+    }
+
+    // Tilt compensated compass heading
+    static float heading(float roll, float pitch, float[] mag) {
+        double sr = Math.sin(roll), cr = Math.cos(roll);
+        double sp = Math.sin(pitch), cp = Math.cos(pitch);
+        double x = mag[0] * cp + mag[1] * sr * sp + mag[2] * cr * sp;
+        double y = mag[1] * cr - mag[2] * sr;
+        return (float)Math.atan2(-y, x);
+    }
+
+    // Blends two angles along the shortest arc, so crossing +-PI does not spin around
+    static float blend(float predicted, float measured, float alpha) {
+        float delta = wrap(measured - predicted);
+        return wrap(predicted + (1.0f - alpha) * delta);
+    }
+
+    static float wrap(float angle) {
+        while (angle > Math.PI) {
+            angle -= 2.0f * (float)Math.PI;
+        }
+        while (angle < -Math.PI) {
+            angle += 2.0f * (float)Math.PI;
+        }
+        return angle;
+    }
+}
@@ -0,0 +1,33 @@
+package com.fuse.sensorkit;
+
+/*
+    Lets through at most one sample per `1 / rateHz` seconds and drops the rest.
+    Placed after the smoothing stages, the samples it keeps still reflect the
+    samples it drops.
+*/
+public class DecimationFilter extends SampleFilter {
+
+    private final double mIntervalMs;
+    private double mLastKept;
+    private boolean mHasKept;
+
+    public DecimationFilter(double rateHz) {
+        mIntervalMs = rateHz > 0.0 ? 1000.0 / rateHz : 0.0;
+    }
+
+    @Override
+    public boolean apply(double[] sample, int offset) {
+        double time = sample[offset];
+        if (mHasKept && time - mLastKept < mIntervalMs) {
+            return false;
+        }
+        mLastKept = time;
+        mHasKept = true;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        mHasKept = false;
+    }
+}
@@ -0,0 +1,47 @@
+package com.fuse.sensorkit;
+
+/*
+    First order high-pass filter on each axis, which removes slowly changing
+    components such as gravity from accelerometer data.
+*/
+public class HighPassFilter extends SampleFilter {
+
+    private final double mTimeConstantMs;
+    private final double[] mLastInput = new double[3];
+    private final double[] mOutput = new double[3];
+    private double mLastTime;
+    private boolean mHasInput;
+
+    public HighPassFilter(double timeConstantMs) {
+        mTimeConstantMs = timeConstantMs;
+    }
+
+    @Override
+    public boolean apply(double[] sample, int offset) {
+        double time = sample[offset];
+        if (!mHasInput) {
+            System.arraycopy(sample, offset + 1, mLastInput, 0, 3);
+            mOutput[0] = mOutput[1] = mOutput[2] = 0.0;
+            mLastTime = time;
+            mHasInput = true;
+            sample[offset + 1] = sample[offset + 2] = sample[offset + 3] = 0.0;
+            return true;
+        }
+
+        double dt = Math.max(0.0, time - mLastTime);
+        mLastTime = time;
+        double alpha = mTimeConstantMs / (mTimeConstantMs + dt);
+        for (int i = 0; i < 3; i++) {
+            double input = sample[offset + 1 + i];
+            mOutput[i] = alpha * (mOutput[i] + input - mLastInput[i]);
+            mLastInput[i] = input;
+            sample[offset + 1 + i] = mOutput[i];
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        mHasInput = false;
+    }
+}
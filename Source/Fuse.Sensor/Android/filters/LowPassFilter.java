@@ -0,0 +1,42 @@
+package com.fuse.sensorkit;
+
+/*
+    First order low-pass filter on each axis. The smoothing factor is derived from
+    the time between samples, so the response does not depend on the sampling rate.
+*/
+public class LowPassFilter extends SampleFilter {
+
+    private final double mTimeConstantMs;
+    private final double[] mOutput = new double[3];
+    private double mLastTime;
+    private boolean mHasOutput;
+
+    public LowPassFilter(double timeConstantMs) {
+        mTimeConstantMs = timeConstantMs;
+    }
+
+    @Override
+    public boolean apply(double[] sample, int offset) {
+        double time = sample[offset];
+        if (!mHasOutput) {
+            System.arraycopy(sample, offset + 1, mOutput, 0, 3);
+            mLastTime = time;
+            mHasOutput = true;
+            return true;
+        }
+
+        double dt = Math.max(0.0, time - mLastTime);
+        mLastTime = time;
+        double alpha = dt / (mTimeConstantMs + dt);
+        for (int i = 0; i < 3; i++) {
+            mOutput[i] += alpha * (sample[offset + 1 + i] - mOutput[i]);
+            sample[offset + 1 + i] = mOutput[i];
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        mHasOutput = false;
+    }
+}
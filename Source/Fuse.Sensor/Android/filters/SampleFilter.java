@@ -0,0 +1,20 @@
+package com.fuse.sensorkit;
+
+/*
+    One stage of a SamplePipeline.
+
+    Filters work on samples in place. A sample is STRIDE doubles: a timestamp in
+    milliseconds followed by three values. Filters only depend on plain Java, so
+    they can be exercised on the JVM by feeding them recorded sample traces.
+*/
+public abstract class SampleFilter {
+
+    public static final int STRIDE = 4;
+
+    /* Transforms the sample at `offset` of `sample` in place. Returns false to drop it. */
+    public abstract boolean apply(double[] sample, int offset);
+
+    /* Forgets all state, for instance when the sensor is restarted. */
+    public void reset() {
+    }
+}
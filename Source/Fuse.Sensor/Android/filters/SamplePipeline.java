@@ -0,0 +1,55 @@
+package com.fuse.sensorkit;
+
+/*
+    Runs samples through a fixed sequence of filters. A sample dropped by one
+    filter is not seen by the filters after it.
+*/
+public class SamplePipeline {
+
+    private final SampleFilter[] mFilters;
+
+    public SamplePipeline(SampleFilter... filters) {
+        mFilters = filters;
+    }
+
+    /*
+        Builds the standard pipeline: high-pass, low-pass, window statistics, then
+        decimation. Zero or negative arguments leave a stage out, and `statistic` is
+        one of the WindowStatisticsFilter constants.
+    */
+    public static SamplePipeline create(double highPassMs, double lowPassMs, int window, int statistic, double rateHz) {
+        int count = 0;
+        SampleFilter[] filters = new SampleFilter[4];
+        if (highPassMs > 0.0) {
+            filters[count++] = new HighPassFilter(highPassMs);
+        }
+        if (lowPassMs > 0.0) {
+            filters[count++] = new LowPassFilter(lowPassMs);
+        }
+        if (window > 1) {
+            filters[count++] = new WindowStatisticsFilter(window, statistic);
+        }
+        if (rateHz > 0.0) {
+            filters[count++] = new DecimationFilter(rateHz);
+        }
+
+        SampleFilter[] used = new SampleFilter[count];
+        System.arraycopy(filters, 0, used, 0, count);
+        return new SamplePipeline(used);
+    }
+
+    public boolean apply(double[] sample, int offset) {
+        for (SampleFilter filter : mFilters) {
+            if (!filter.apply(sample, offset)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void reset() {
+        for (SampleFilter filter : mFilters) {
+            filter.reset();
+        }
+    }
+}
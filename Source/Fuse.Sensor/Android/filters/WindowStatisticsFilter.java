@@ -0,0 +1,66 @@
+package com.fuse.sensorkit;
+
+/*
+    Replaces each sample with the mean or the variance of the last `windowSize`
+    samples, per axis.
+*/
+public class WindowStatisticsFilter extends SampleFilter {
+
+    public static final int MEAN = 0;
+    public static final int VARIANCE = 1;
+
+    private final int mStatistic;
+    private final double[] mWindow;
+    private final int mWindowSize;
+    private final double[] mSum = new double[3];
+    private final double[] mSumOfSquares = new double[3];
+    private int mNext;
+    private int mCount;
+
+    public WindowStatisticsFilter(int windowSize, int statistic) {
+        mWindowSize = Math.max(1, windowSize);
+        mStatistic = statistic;
+        mWindow = new double[mWindowSize * 3];
+    }
+
+    @Override
+    public boolean apply(double[] sample, int offset) {
+        int slot = mNext * 3;
+        for (int i = 0; i < 3; i++) {
+            double value = sample[offset + 1 + i];
+            if (mCount == mWindowSize) {
+                double old = mWindow[slot + i];
+                mSum[i] -= old;
+                mSumOfSquares[i] -= old * old;
+            }
+            mWindow[slot + i] = value;
+            mSum[i] += value;
+            mSumOfSquares[i] += value * value;
+        }
+        mNext = (mNext + 1) % mWindowSize;
+        if (mCount < mWindowSize) {
+            mCount++;
+        }
+
+        for (int i = 0; i < 3; i++) {
+            double mean = mSum[i] / mCount;
+            if (mStatistic == VARIANCE) {
+                // Clamped, since cancellation can make it slightly negative
+                sample[offset + 1 + i] = Math.max(0.0, mSumOfSquares[i] / mCount - mean * mean);
+            } else {
+                sample[offset + 1 + i] = mean;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        mNext = 0;
+        mCount = 0;
+        for (int i = 0; i < 3; i++) {
+            mSum[i] = 0.0;
+            mSumOfSquares[i] = 0.0;
+        }
+    }
+}
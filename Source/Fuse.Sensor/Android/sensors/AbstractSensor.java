@@ -6,20 +6,50 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Build;
-import com.foreign.Uno.Action_Object;
-
+import android.os.SystemClock;
+
+/*
+    Samples are written into a preallocated ring buffer as they arrive, and handed
+    over in bulk by `drainSamples`, which the Uno side calls once per frame. This
+    keeps sensor delivery free of allocations and of per-sample calls into Uno.
+
+    Each sample occupies SAMPLE_STRIDE doubles: the time in milliseconds since
+    `start()` followed by three values. The time is a double so it still resolves
+    fractions of a millisecond after the sensor has been running for days. When
+    the consumer falls behind, the oldest samples are overwritten. An optional SamplePipeline filters samples before they
+    are buffered, so only derived values reach Uno.
+*/
 public abstract class AbstractSensor {
 
+    public static final int SAMPLE_STRIDE = SampleFilter.STRIDE;
+
+    private static final int DEFAULT_CAPACITY = 256;
+
     private final SensorManager mSensorManager;
     private final Sensor mSensor;
     private final SensorEventListener mSensorEventListener;
     protected boolean isSensing = false;
-    private Action_Object onDataChanged;
 
-    public AbstractSensor(final SensorType sensorType, Action_Object onDataChanged) {
-        this.onDataChanged = onDataChanged;
+    private int mSamplingPeriodUs = SensorManager.SENSOR_DELAY_NORMAL;
+    private int mMaxReportLatencyUs = 0;
+
+    private final double[] mRing;
+    private final int mCapacity;
+    private int mHead;
+    private int mCount;
+    private long mStartNanos;
+    private final double[] mScratch = new double[SAMPLE_STRIDE];
+    private SamplePipeline mPipeline;
+
+    public AbstractSensor(final SensorType sensorType) {
+        this(sensorType, DEFAULT_CAPACITY);
+    }
+
+    public AbstractSensor(final SensorType sensorType, int capacity) {
         mSensorManager = (SensorManager) com.fuse.Activity.getRootActivity().getSystemService(Context.SENSOR_SERVICE);
         mSensor = mSensorManager.getDefaultSensor(getSensorType(sensorType));
+        mCapacity = capacity;
+        mRing = new double[capacity * SAMPLE_STRIDE];
 
         mSensorEventListener = new SensorEventListener() {
 
@@ -30,17 +60,48 @@ public abstract class AbstractSensor {
 
             @Override
             public void onSensorChanged(SensorEvent event) {
-                SensorData data = buildData(event);
-                if (AbstractSensor.this.onDataChanged != null)
-                    AbstractSensor.this.onDataChanged.run(data);
+                AbstractSensor.this.write(event);
             }
         };
     }
 
+    /*
+        `samplingPeriodUs` is either one of the SensorManager.SENSOR_DELAY_* constants or
+        a period in microseconds. A non-zero `maxReportLatencyUs` lets the hardware batch
+        samples and deliver them late, which saves power on devices with a sensor FIFO.
+        Takes effect the next time the sensor is started.
+    */
+    public void setSamplingPeriod(int samplingPeriodUs, int maxReportLatencyUs) {
+        mSamplingPeriodUs = samplingPeriodUs;
+        mMaxReportLatencyUs = maxReportLatencyUs;
+    }
+
+    /* Filters samples through `pipeline` from now on, or stops filtering if it is null. */
+    public void setPipeline(SamplePipeline pipeline) {
+        synchronized (mRing) {
+            mPipeline = pipeline;
+        }
+    }
+
+    protected SensorManager getSensorManager() {
+        return mSensorManager;
+    }
+
     public void start() throws Exception {
+        synchronized (mRing) {
+            mHead = 0;
+            mCount = 0;
+            mStartNanos = SystemClock.elapsedRealtimeNanos();
+            if (mPipeline != null) {
+                mPipeline.reset();
+            }
+        }
         this.isSensing = true;
-        boolean status = mSensorManager.registerListener(mSensorEventListener, mSensor, SensorManager.SENSOR_DELAY_NORMAL);
+        boolean status = (mMaxReportLatencyUs > 0 && Build.VERSION.SDK_INT >= 19)
+            ? mSensorManager.registerListener(mSensorEventListener, mSensor, mSamplingPeriodUs, mMaxReportLatencyUs)
+            : mSensorManager.registerListener(mSensorEventListener, mSensor, mSamplingPeriodUs);
         if (!status) {
+            this.isSensing = false;
             throw new Exception(getSensorName() + " sensor is not available.");
         }
     }
@@ -50,7 +111,60 @@ public abstract class AbstractSensor {
         this.isSensing = false;
     }
 
-    protected abstract SensorData buildData(SensorEvent event);
+    private void write(SensorEvent event) {
+        synchronized (mRing) {
+            mScratch[0] = sampleTime(event);
+            if (!readValues(event, mScratch, 1)) {
+                return;
+            }
+            if (mPipeline != null && !mPipeline.apply(mScratch, 0)) {
+                return;
+            }
+
+            int slot = (mHead + mCount) % mCapacity;
+            if (mCount == mCapacity) {
+                mHead = (mHead + 1) % mCapacity;
+            } else {
+                mCount++;
+            }
+            System.arraycopy(mScratch, 0, mRing, slot * SAMPLE_STRIDE, SAMPLE_STRIDE);
+        }
+    }
+
+    /* Milliseconds between `start()` and when `event` was sensed. */
+    protected double sampleTime(SensorEvent event) {
+        return (event.timestamp - mStartNanos) / 1000000.0;
+    }
+
+    /*
+        Returns every sample received since the last call, oldest first and packed as
+        described above, or null if there are none.
+    */
+    public double[] drainSamples() {
+        synchronized (mRing) {
+            if (mCount == 0) {
+                return null;
+            }
+
+            double[] samples = new double[mCount * SAMPLE_STRIDE];
+            int first = Math.min(mCount, mCapacity - mHead);
+            System.arraycopy(mRing, mHead * SAMPLE_STRIDE, samples, 0, first * SAMPLE_STRIDE);
+            System.arraycopy(mRing, 0, samples, first * SAMPLE_STRIDE, (mCount - first) * SAMPLE_STRIDE);
+
+            mHead = 0;
+            mCount = 0;
+            return samples;
+        }
+    }
+
+    /* Writes the three values of a sample to `out` at `offset`. Returns false to skip the event. */
+    protected boolean readValues(SensorEvent event, double[] out, int offset) {
+        float[] values = event.values;
+        out[offset] = values.length > 0 ? values[0] : 0.0f;
+        out[offset + 1] = values.length > 1 ? values[1] : 0.0f;
+        out[offset + 2] = values.length > 2 ? values[2] : 0.0f;
+        return true;
+    }
 
     protected abstract String getSensorName();
 
@@ -69,6 +183,7 @@ public abstract class AbstractSensor {
                 return Sensor.TYPE_GRAVITY;
 
             case GYROSCOPE:
+            case ORIENTATION:
                 return Sensor.TYPE_GYROSCOPE;
 
             case USER_ACCELERATION:
@@ -88,4 +203,4 @@ public abstract class AbstractSensor {
         }
         return 0;
     }
-}
\ No newline at end of file
+}
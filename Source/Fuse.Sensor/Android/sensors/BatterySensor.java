@@ -6,16 +6,21 @@ import android.content.IntentFilter;
 import android.content.BroadcastReceiver;
 import com.foreign.Uno.Action_Object;
 
+/*
+    Battery broadcasts arrive often, mostly for voltage and temperature changes that
+    are not reported. Data is only delivered when the level moves by at least the
+    level threshold, or the plug, status or health changes, and at most once per
+    frame.
+*/
 public class BatterySensor {
 
-    private Action_Object onDataChanged;
+    private final FrameCoalescer mCoalescer;
     protected boolean isSensing = false;
+    private int mLevelThresholdPercent = 1;
+    private float mLastLevelPercentSensed = Float.NaN;
 
     // Last data sensed
-    private int mLastLevelSensed = Integer.MAX_VALUE;
     private int mLastScaleSensed = Integer.MAX_VALUE;
-    private int mLastTemperatureSensed = Integer.MAX_VALUE;
-    private int mLastVoltageSensed = Integer.MAX_VALUE;
     private int mLastPluggedSensed = Integer.MAX_VALUE;
     private int mLastStatusSensed = Integer.MAX_VALUE;
     private int mLastHealthSensed = Integer.MAX_VALUE;
@@ -23,7 +28,7 @@ public class BatterySensor {
     private final BroadcastReceiver mBroadcastReceiver;
 
     public BatterySensor(Action_Object onDataChanged) {
-        this.onDataChanged = onDataChanged;
+        mCoalescer = new FrameCoalescer(onDataChanged);
         mBroadcastReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
@@ -35,13 +40,17 @@ public class BatterySensor {
                 int plugged = intent.getIntExtra("plugged", -1);
                 int status = intent.getIntExtra("status", 0);
                 int health = intent.getIntExtra("health", 0);
-                BatteryData data = new BatteryData(level, scale, temperature, voltage, plugged, status, health);
-                if (BatterySensor.this.onDataChanged != null && BatterySensor.this.shouldPostData(data))
-                    BatterySensor.this.onDataChanged.run(data);
+                if (BatterySensor.this.shouldPostData(level, scale, plugged, status, health))
+                    mCoalescer.post(new BatteryData(level, scale, temperature, voltage, plugged, status, health));
             }
         };
     }
 
+    /* Only report level changes of at least `percent` percent. Plug, status and health changes are always reported. */
+    public void setLevelThreshold(int percent) {
+        mLevelThresholdPercent = Math.max(0, percent);
+    }
+
     public void start() {
         this.isSensing = true;
         IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
@@ -51,11 +60,10 @@ public class BatterySensor {
     public void stop() {
         com.fuse.Activity.getRootActivity().unregisterReceiver(mBroadcastReceiver);
         this.isSensing = false;
+        mCoalescer.cancel();
         // Clear last sensed values
-        mLastLevelSensed = Integer.MAX_VALUE;
+        mLastLevelPercentSensed = Float.NaN;
         mLastScaleSensed = Integer.MAX_VALUE;
-        mLastTemperatureSensed = Integer.MAX_VALUE;
-        mLastVoltageSensed = Integer.MAX_VALUE;
         mLastPluggedSensed = Integer.MAX_VALUE;
         mLastStatusSensed = Integer.MAX_VALUE;
         mLastHealthSensed = Integer.MAX_VALUE;
@@ -65,28 +73,23 @@ public class BatterySensor {
         return isSensing;
     }
 
-    protected boolean shouldPostData(BatteryData data) {
-        // Only post when specific values changed
-        int level = data.getLevel();
-        int scale = data.getScale();
-        int temperature = data.getTemperature();
-        int voltage = data.getVoltage();
-        int plugged = data.getPlugged();
-        int status = data.getBatteryStatus();
-        int health = data.getBatteryHealth();
+    protected boolean shouldPostData(int level, int scale, int plugged, int status, int health) {
+        float levelPercent = (level >= 0 && scale > 0) ? level * 100.0f / scale : level;
+        boolean levelChanged = Float.isNaN(mLastLevelPercentSensed)
+            || mLastScaleSensed != scale
+            || Math.abs(levelPercent - mLastLevelPercentSensed) >= Math.max(mLevelThresholdPercent, 1e-3f);
 
-        // Ignore Temperature and Voltage
-        boolean shouldPost = (mLastLevelSensed != level ||
-                              mLastScaleSensed != scale ||
+        // Temperature and voltage are not reported, so they never trigger a post
+        boolean shouldPost = (levelChanged ||
                               mLastPluggedSensed != plugged ||
                               mLastStatusSensed != status ||
                               mLastHealthSensed != health );
 
         if (shouldPost) {
-            this.mLastLevelSensed = level;
-            this.mLastScaleSensed = scale;
-            this.mLastTemperatureSensed = temperature;
-            this.mLastVoltageSensed = voltage;
+            if (levelChanged) {
+                this.mLastLevelPercentSensed = levelPercent;
+                this.mLastScaleSensed = scale;
+            }
             this.mLastPluggedSensed = plugged;
             this.mLastStatusSensed = status;
             this.mLastHealthSensed = health;
@@ -8,26 +8,38 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import com.foreign.Uno.Action_Object;
 
+/*
+    CONNECTIVITY_CHANGE is broadcast for many changes that do not affect whether we
+    are connected. Only changes of the connection status are delivered, at most once
+    per frame.
+*/
 public class ConnectionStateSensor {
 
-    private Action_Object onDataChanged;
+    private static final ConnectionStateData CONNECTED = new ConnectionStateData(true, "connected");
+    private static final ConnectionStateData DISCONNECTED = new ConnectionStateData(false, "disconnected");
+
+    private final FrameCoalescer mCoalescer;
     protected boolean isSensing = false;
+    private ConnectionStateData mLastSensed;
     private final BroadcastReceiver mBroadcastReceiver;
 
     public ConnectionStateSensor(Action_Object onDataChanged) {
-        this.onDataChanged = onDataChanged;
+        mCoalescer = new FrameCoalescer(onDataChanged);
         mBroadcastReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                if (ConnectionStateSensor.this.onDataChanged != null){
-                    boolean connectionStatus = false;
-                    NetworkInfo networkInfo =(NetworkInfo) intent.getExtras().get(ConnectivityManager.EXTRA_NETWORK_INFO);
-                    if(networkInfo!=null && networkInfo.getState() == NetworkInfo.State.CONNECTED) {
-                        connectionStatus = true;
-                    } else if(intent.getBooleanExtra(ConnectivityManager.EXTRA_NO_CONNECTIVITY,Boolean.FALSE)) {
-                        connectionStatus = false;
-                    }
-                    ConnectionStateSensor.this.onDataChanged.run(new ConnectionStateData(connectionStatus, connectionStatus ? "connected" : "disconnected"));
+                boolean connectionStatus = false;
+                NetworkInfo networkInfo =(NetworkInfo) intent.getExtras().get(ConnectivityManager.EXTRA_NETWORK_INFO);
+                if(networkInfo!=null && networkInfo.getState() == NetworkInfo.State.CONNECTED) {
+                    connectionStatus = true;
+                } else if(intent.getBooleanExtra(ConnectivityManager.EXTRA_NO_CONNECTIVITY,Boolean.FALSE)) {
+                    connectionStatus = false;
+                }
+                // The two possible states are shared instances, so nothing is allocated per broadcast
+                ConnectionStateData data = connectionStatus ? CONNECTED : DISCONNECTED;
+                if (data != mLastSensed) {
+                    mLastSensed = data;
+                    mCoalescer.post(data);
                 }
             }
         };
@@ -43,6 +55,8 @@ public class ConnectionStateSensor {
     public void stop() {
         com.fuse.Activity.getRootActivity().unregisterReceiver(mBroadcastReceiver);
         this.isSensing = false;
+        mCoalescer.cancel();
+        mLastSensed = null;
     }
 
     public boolean isSensing() {
@@ -0,0 +1,55 @@
+package com.fuse.sensorkit;
+
+import android.view.Choreographer;
+import com.foreign.Uno.Action_Object;
+
+/*
+    Delivers at most one value per frame to `target`. Values posted while a
+    delivery is pending replace the pending value, so bursts of broadcasts reach
+    Uno as the latest value only.
+
+    `post` must be called on a thread with a Looper, typically the main thread
+    where broadcast receivers registered without a handler are called. `cancel`
+    may be called from any thread.
+*/
+final class FrameCoalescer implements Choreographer.FrameCallback {
+
+    private final Action_Object mTarget;
+    private Choreographer mChoreographer;
+    private Object mPending;
+    private boolean mPosted;
+
+    FrameCoalescer(Action_Object target) {
+        mTarget = target;
+    }
+
+    synchronized void post(Object value) {
+        mPending = value;
+        if (!mPosted) {
+            mPosted = true;
+            mChoreographer = Choreographer.getInstance();
+            mChoreographer.postFrameCallback(this);
+        }
+    }
+
+    synchronized void cancel() {
+        if (mPosted) {
+            mChoreographer.removeFrameCallback(this);
+            mPosted = false;
+        }
+        mPending = null;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        Object value;
+        synchronized (this) {
+            mPosted = false;
+            value = mPending;
+            mPending = null;
+        }
+        if (value != null && mTarget != null) {
+            mTarget.run(value);
+        }
+    }
+}
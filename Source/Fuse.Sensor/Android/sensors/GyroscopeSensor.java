@@ -1,18 +1,11 @@
 package com.fuse.sensorkit;
 
 import android.content.Context;
-import android.hardware.SensorEvent;
-import com.foreign.Uno.Action_Object;
 
 public class GyroscopeSensor extends AbstractSensor {
 
-    public GyroscopeSensor(Action_Object onDataChanged) {
-        super(SensorType.GYROSCOPE, onDataChanged);
-    }
-
-    @Override
-    protected SensorData buildData(SensorEvent event) {
-        return new SensorData(SensorType.GYROSCOPE, event.values);
+    public GyroscopeSensor() {
+        super(SensorType.GYROSCOPE);
     }
 
     @Override
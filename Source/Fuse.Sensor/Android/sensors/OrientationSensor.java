@@ -0,0 +1,100 @@
+package com.fuse.sensorkit;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+
+/*
+    Roll, pitch and yaw in radians, fused from the gyroscope, accelerometer and
+    magnetometer by a ComplementaryFusion. Samples are produced at the gyroscope
+    rate; the other two sensors only keep their latest reading up to date. Without
+    a magnetometer the yaw is integrated from the gyroscope alone.
+*/
+public class OrientationSensor extends AbstractSensor {
+
+    private static final float TIME_CONSTANT_MS = 500.0f;
+
+    private final ComplementaryFusion mFusion = new ComplementaryFusion(TIME_CONSTANT_MS);
+    private final Sensor mAccelerometer;
+    private final Sensor mMagnetometer;
+    private final SensorEventListener mReadingListener;
+    private final float[] mAccel = new float[3];
+    private final float[] mMag = new float[3];
+    private volatile boolean mHasAccel;
+    private volatile boolean mHasMag;
+
+    public OrientationSensor() {
+        super(SensorType.ORIENTATION);
+        mAccelerometer = getSensorManager().getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        mMagnetometer = getSensorManager().getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+        mReadingListener = new SensorEventListener() {
+
+            @Override
+            public void onAccuracyChanged(Sensor sensor, int accuracy) {
+                // Ignore
+            }
+
+            @Override
+            public void onSensorChanged(SensorEvent event) {
+                synchronized (mFusion) {
+                    if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+                        System.arraycopy(event.values, 0, mAccel, 0, 3);
+                        mHasAccel = true;
+                    } else {
+                        System.arraycopy(event.values, 0, mMag, 0, 3);
+                        mHasMag = true;
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public void start() throws Exception {
+        if (mAccelerometer == null) {
+            throw new Exception(getSensorName() + " sensor is not available.");
+        }
+
+        synchronized (mFusion) {
+            mFusion.reset();
+            mHasAccel = false;
+            mHasMag = false;
+        }
+        getSensorManager().registerListener(mReadingListener, mAccelerometer, SensorManager.SENSOR_DELAY_GAME);
+        if (mMagnetometer != null) {
+            getSensorManager().registerListener(mReadingListener, mMagnetometer, SensorManager.SENSOR_DELAY_GAME);
+        }
+
+        try {
+            super.start();
+        } catch (Exception e) {
+            getSensorManager().unregisterListener(mReadingListener);
+            throw e;
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        getSensorManager().unregisterListener(mReadingListener);
+    }
+
+    @Override
+    protected boolean readValues(SensorEvent event, double[] out, int offset) {
+        synchronized (mFusion) {
+            // Nothing to fuse until gravity has been measured once
+            if (!mHasAccel) {
+                return false;
+            }
+            mFusion.update(sampleTime(event), event.values, mAccel, mHasMag ? mMag : null, out, offset);
+            return true;
+        }
+    }
+
+    @Override
+    protected String getSensorName() {
+        return "Orientation";
+    }
+
+}
@@ -2,17 +2,19 @@ package com.fuse.sensorkit;
 
 import android.content.Context;
 import android.hardware.SensorEvent;
-import com.foreign.Uno.Action_Object;
 
 public class PedometerSensor extends AbstractSensor {
 
-    public PedometerSensor(Action_Object onDataChanged) {
-        super(SensorType.STEP_COUNTER, onDataChanged);
+    public PedometerSensor() {
+        super(SensorType.STEP_COUNTER);
     }
 
     @Override
-    protected SensorData buildData(SensorEvent event) {
-        return new SensorData(SensorType.STEP_COUNTER, new float[] {event.values[0], 0.0f, 0.0f});
+    protected boolean readValues(SensorEvent event, double[] out, int offset) {
+        out[offset] = event.values[0];
+        out[offset + 1] = 0.0f;
+        out[offset + 2] = 0.0f;
+        return true;
     }
 
     @Override
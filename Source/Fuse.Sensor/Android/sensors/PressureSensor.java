@@ -2,17 +2,19 @@ package com.fuse.sensorkit;
 
 import android.content.Context;
 import android.hardware.SensorEvent;
-import com.foreign.Uno.Action_Object;
 
 public class PressureSensor extends AbstractSensor {
 
-    public PressureSensor(Action_Object onDataChanged) {
-        super(SensorType.PRESSURE, onDataChanged);
+    public PressureSensor() {
+        super(SensorType.PRESSURE);
     }
 
     @Override
-    protected SensorData buildData(SensorEvent event) {
-        return new SensorData(SensorType.PRESSURE, new float[] {event.values[0], 0.0f, 0.0f});
+    protected boolean readValues(SensorEvent event, double[] out, int offset) {
+        out[offset] = event.values[0];
+        out[offset + 1] = 0.0f;
+        out[offset + 2] = 0.0f;
+        return true;
     }
 
     @Override
@@ -1,18 +1,11 @@
 package com.fuse.sensorkit;
 
 import android.content.Context;
-import android.hardware.SensorEvent;
-import com.foreign.Uno.Action_Object;
 
 public class UserAccelerationSensor extends AbstractSensor {
 
-    public UserAccelerationSensor(Action_Object onDataChanged) {
-        super(SensorType.USER_ACCELERATION, onDataChanged);
-    }
-
-    @Override
-    protected SensorData buildData(SensorEvent event) {
-        return new SensorData(SensorType.USER_ACCELERATION, event.values);
+    public UserAccelerationSensor() {
+        super(SensorType.USER_ACCELERATION);
     }
 
     @Override